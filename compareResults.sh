@@ -0,0 +1,15 @@
+#!/bin/bash
+
+#Doesn't need the ILOG jar, so this works anywhere with a JDK
+
+E_BADARGS=65
+if [ $# -lt 2 ]
+then
+	echo "Usage: `basename $0` [--threshold <percent>] <baseline.log> <run.log> [<run.log> ...]"
+	echo "Description:"
+	echo -e "\t Compares each run log (as written by runAll.sh) against the baseline log."
+	echo -e "\t Exits with 1 if a run regresses by more than <percent> (default 10), has new timeouts,\n\t or is missing instances that are in the baseline."
+	exit $E_BADARGS
+fi
+
+javac -sourcepath src ./src/solver/cp/ResultsAnalyzer.java && java -cp src solver.cp.ResultsAnalyzer "$@"
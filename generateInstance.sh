@@ -0,0 +1,6 @@
+#!/bin/bash
+
+#Doesn't need the ILOG jar, so this works anywhere with a JDK
+#e.g. sh generateInstance.sh numWeeks=12 numEmployees=300 tightness=0.9 out=input/generated/84_300.sched
+
+javac -sourcepath src ./src/solver/cp/InstanceGenerator.java && java -cp src solver.cp.InstanceGenerator "$@"
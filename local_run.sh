@@ -6,4 +6,4 @@ nativecode="/Applications/CPLEX_Studio2211/opl/bin/x86-64_osx"
 
 #Can't use DYLD_LIBRARY_PATH because of Appple SIP (I think?); will use -Djava.library.path instead
 #https://developer.apple.com/forums/thread/703757
-java -Djava.library.path=$nativecode -cp $jarpath:$classfilefolder solver.cp.Main $1
+java -Djava.library.path=$nativecode -cp $jarpath:$classfilefolder solver.cp.Main "$@"
@@ -0,0 +1,7 @@
+#!/bin/bash
+
+#The pure-Java engine doesn't need the ILOG jar, license or native libraries,
+#so this works on any machine with a JDK.
+#-sourcepath only pulls in what the engine uses (ScheduleParameters, Timer)
+
+javac -sourcepath src ./src/solver/cp/engine/*.java
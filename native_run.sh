@@ -0,0 +1,13 @@
+#!/bin/bash
+
+#Runs the pure-Java engine; works on any machine with a JDK.
+#Use with runAll.sh through RUN_SCRIPT=./native_run.sh
+
+E_BADARGS=65
+if [ $# -lt 1 ]
+then
+	echo "Usage: `basename $0` <input> [--seed <seed>]"
+	exit $E_BADARGS
+fi
+
+java -cp src solver.cp.engine.NativeMain "$@"
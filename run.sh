@@ -7,9 +7,9 @@
 #Designed to work on the department machines
 
 E_BADARGS=65
-if [ $# -ne 1 ]
+if [ $# -lt 1 ]
 then
-	echo "Usage: `basename $0` <input>"
+	echo "Usage: `basename $0` <input> [options]"
 	exit $E_BADARGS
 fi
 	
@@ -22,4 +22,4 @@ export ILOG_LICENSE_FILE=/local/projects/cplex/ilm/current/linux/access.site.ilm
 export LD_LIBRARY_PATH=$LD_LIBRARY_PATH:/local/projects/cplex/CPLEX_Studio221/cpoptimizer/bin/x86-64_linux:/local/projects/cplex/CPLEX_Studio221/cplex/bin/x86-64_linux
 
 # add the solver jar to the classpath and run
-java -cp /local/projects/cplex/CPLEX_Studio221/cpoptimizer/lib/ILOG.CP.jar:src solver.cp.Main $input
+java -cp /local/projects/cplex/CPLEX_Studio221/cpoptimizer/lib/ILOG.CP.jar:src solver.cp.Main "$@"
@@ -0,0 +1,24 @@
+#!/bin/bash
+
+########################################
+############# CSCI 2951-O ##############
+########################################
+
+#Designed to work on the department machines
+#e.g. sh runAblation.sh input/ 30 sample 40 --log ablation.log
+
+E_BADARGS=65
+if [ $# -lt 2 ]
+then
+	echo "Usage: `basename $0` <inputFolder/> <timeBudget> [full | sample <n>] [--seed <seed>] [--log <file>]"
+	exit $E_BADARGS
+fi
+
+# export the ilog license to run the solver
+export ILOG_LICENSE_FILE=/local/projects/cplex/ilm/current/linux/access.site.ilm
+
+# export the solver libraries into the path
+export LD_LIBRARY_PATH=$LD_LIBRARY_PATH:/local/projects/cplex/CPLEX_Studio221/cpoptimizer/bin/x86-64_linux:/local/projects/cplex/CPLEX_Studio221/cplex/bin/x86-64_linux
+
+# add the solver jar to the classpath and run
+java -cp /local/projects/cplex/CPLEX_Studio221/cpoptimizer/lib/ILOG.CP.jar:src solver.cp.AblationSweep "$@"
@@ -17,6 +17,7 @@ then
 	echo -e "\t Last line of each run is appended to the given logFile."
 	echo -e "\t If a run fails, due to the time limit or other error, the file name is appended to the logFile with --'s as time and result. "
 	echo -e "\t If the logFile already exists, the run is aborted."
+	echo -e "\t Set RUN_SCRIPT to run something other than ./run.sh (e.g. ./native_run.sh)."
 	exit $E_BADARGS
 fi
 
@@ -24,6 +25,7 @@ fi
 inputFolder=$1
 timeLimit=$2
 logFile=$3
+runScript=${RUN_SCRIPT:-./run.sh}
 
 # Append slash to the end of inputFolder if it does not have it
 lastChar="${inputFolder: -1}"
@@ -41,7 +43,7 @@ touch $logFile
 for f in $inputFolder*.*
 do
 	echo "Running $f"
-	timeout $timeLimit ./run.sh $f > output.tmp
+	timeout $timeLimit $runScript $f > output.tmp
 	returnValue="$?"
 	if [[ "$returnValue" = 0 ]]; then 						# Run is successful
 		cat output.tmp | tail -1 >> $logFile				# Record the last line as solution
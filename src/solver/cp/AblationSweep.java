@@ -0,0 +1,202 @@
+package solver.cp;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ilog.concert.IloException;
+import solver.cp.ModelConfig.Family;
+import solver.cp.ModelConfig.Setting;
+
+/**
+ * Finds out which parts of the model pay for themselves: runs every instance
+ * in a folder under a full factorial (or a random sample) of ModelConfig
+ * settings and reports how each setting of each family affects time and fails.
+ *
+ * Every solution is checked with SolutionChecker, since switching a family off
+ * can let CP "solve" the instance with a schedule that isn't valid. Those runs
+ * count as unsolved.
+ */
+public class AblationSweep {
+  static final int E_BADARGS = 65;
+
+  static class Run {
+    ModelConfig config;
+    String instance;
+    boolean solved;
+    boolean valid;
+    double time;
+    // Over all restarts, not just the run that found the solution
+    long cumulativeFails;
+  }
+
+  static List<ModelConfig> fullFactorial() {
+    List<ModelConfig> configs = new ArrayList<>();
+    configs.add(new ModelConfig());
+    for (Family family : Family.values()) {
+      List<ModelConfig> expanded = new ArrayList<>();
+      for (ModelConfig config : configs) {
+        for (Setting setting : family.settings) {
+          ModelConfig copy = new ModelConfig();
+          copy.settings.putAll(config.settings);
+          copy.set(family, setting);
+          expanded.add(copy);
+        }
+      }
+      configs = expanded;
+    }
+    return configs;
+  }
+
+  // n random configs out of the full factorial, always including the default
+  static List<ModelConfig> sample(int n, Random rand) {
+    List<ModelConfig> configs = fullFactorial();
+    Collections.shuffle(configs, rand);
+    List<ModelConfig> sampled = new ArrayList<>();
+    sampled.add(new ModelConfig());
+    for (ModelConfig config : configs) {
+      if (sampled.size() >= n)
+        break;
+      if (!config.toString().equals(sampled.get(0).toString()))
+        sampled.add(config);
+    }
+    return sampled;
+  }
+
+  static Run run(String file, ModelConfig config, double timeBudget) throws IloException {
+    Run run = new Run();
+    run.config = config;
+    run.instance = new File(file).getName();
+
+    CPInstance instance = new CPInstance(file);
+    instance.config = config;
+    instance.timeBudget = timeBudget;
+
+    Timer watch = new Timer();
+    watch.start();
+    instance.solve();
+    watch.stop();
+
+    run.time = watch.getTime();
+    run.solved = instance.hasSolution;
+    if (run.solved) {
+      run.cumulativeFails = instance.stats.getCumulativeFails();
+      List<String> violations = SolutionChecker.check(instance, instance.getShiftValues(),
+          instance.getHoursValues());
+      run.valid = violations.isEmpty();
+      if (!run.valid)
+        System.out.println("Invalid solution (" + violations.size() + " violations), e.g. " + violations.get(0));
+    }
+    instance.cp.end();
+    return run;
+  }
+
+  static String toJson(Run run) {
+    return "{\"Instance\": \"" + run.instance + "\", \"Config\": \"" + run.config +
+        "\", \"Time\": " + (run.solved ? String.format("%.2f", run.time) : "\"--\"") +
+        ", \"CumulativeFails\": " + (run.solved ? Long.toString(run.cumulativeFails) : "\"--\"") +
+        ", \"Valid\": " + (run.solved ? Boolean.toString(run.valid) : "\"--\"") + "}";
+  }
+
+  /**
+   * Main effect of every setting: averages over all runs that used it.
+   * Unsolved and invalid runs are counted at the full time budget.
+   * MeanCumFails averages the fails of all restarts over the valid runs.
+   */
+  static void report(List<Run> runs, double timeBudget) {
+    System.out.println();
+    System.out.println(String.format("%-14s %-9s %6s %7s %8s %10s %12s",
+        "Family", "Setting", "Runs", "Solved", "Invalid", "MeanTime", "MeanCumFails"));
+    for (Family family : Family.values()) {
+      for (Setting setting : family.settings) {
+        int count = 0;
+        int solved = 0;
+        int invalid = 0;
+        double totalTime = 0;
+        long totalFails = 0;
+        for (Run run : runs) {
+          if (run.config.get(family) != setting)
+            continue;
+          count++;
+          if (run.solved && run.valid) {
+            solved++;
+            totalTime += run.time;
+            totalFails += run.cumulativeFails;
+          } else {
+            if (run.solved)
+              invalid++;
+            totalTime += timeBudget;
+          }
+        }
+        if (count == 0)
+          continue;
+        System.out.println(String.format("%-14s %-9s %6d %7d %8d %10.2f %12s",
+            family, setting, count, solved, invalid, totalTime / count,
+            solved > 0 ? String.format("%.0f", (double) totalFails / solved) : "--"));
+      }
+    }
+  }
+
+  public static void main(String[] args) throws IOException, IloException {
+    if (args.length < 2) {
+      System.out.println("Usage: java AblationSweep <inputFolder/> <timeBudget> [full | sample <n>] [--seed <seed>] [--log <file>]");
+      System.out.println("Description:");
+      System.out.println("\t Solves every instance in inputFolder/ under each constraint-family configuration");
+      System.out.println("\t (see ModelConfig), giving each run timeBudget seconds.");
+      System.out.println("\t Defaults to a sample of 20 configurations; 'full' runs the whole factorial.");
+      System.out.println("\t Every run is appended as a JSON line to the log file (default ablation.log).");
+      System.exit(E_BADARGS);
+    }
+
+    File inputFolder = new File(args[0]);
+    double timeBudget = Double.parseDouble(args[1]);
+    boolean full = false;
+    int sampleSize = 20;
+    long seed = System.nanoTime();
+    String logFile = "ablation.log";
+    for (int i = 2; i < args.length; i++) {
+      if (args[i].equals("full")) {
+        full = true;
+      } else if (args[i].equals("sample") && i + 1 < args.length) {
+        sampleSize = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--seed") && i + 1 < args.length) {
+        seed = Long.parseLong(args[++i]);
+      } else if (args[i].equals("--log") && i + 1 < args.length) {
+        logFile = args[++i];
+      } else {
+        System.out.println("Unknown option: " + args[i]);
+        System.exit(E_BADARGS);
+      }
+    }
+
+    File[] files = inputFolder.listFiles((dir, name) -> name.endsWith(".sched"));
+    if (files == null || files.length == 0) {
+      System.out.println("Error: no .sched files in " + inputFolder);
+      System.exit(E_BADARGS);
+    }
+    Arrays.sort(files);
+
+    List<ModelConfig> configs = full ? fullFactorial() : sample(sampleSize, new Random(seed));
+    System.out.println("Running " + configs.size() + " configurations on " + files.length + " instances");
+
+    List<Run> runs = new ArrayList<>();
+    FileWriter log = new FileWriter(logFile, true);
+    for (ModelConfig config : configs) {
+      System.out.println("Config: " + config);
+      for (File file : files) {
+        Run run = run(file.getPath(), config, timeBudget);
+        runs.add(run);
+        log.write(toJson(run) + "\n");
+        log.flush();
+      }
+    }
+    log.close();
+
+    report(runs, timeBudget);
+  }
+}
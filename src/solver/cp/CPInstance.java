@@ -1,103 +1,86 @@
 package solver.cp;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
-import java.util.Scanner;
 
+import solver.cp.ModelConfig.Family;
+import solver.cp.ModelConfig.Setting;
+
+import ilog.concert.IloAlgorithm;
+import ilog.concert.IloConstraint;
 import ilog.concert.IloException;
 import ilog.concert.IloIntExpr;
 import ilog.concert.IloIntVar;
+import ilog.concert.IloSolution;
 import ilog.cp.IloCP;
 import ilog.cp.IloIntValueEval;
 import ilog.cp.IloSearchPhase;
 import ilog.cp.IloValueSelector;
 import ilog.cp.IloVarSelector;
 
-public class CPInstance {
-  // BUSINESS parameters
-  int numWeeks;
-  int numDays;
-  int numEmployees;
-  int numShifts;
-  int numIntervalsInDay;
-  int[][] minDemandDayShift;
-  int minDailyOperation;
-
-  // EMPLOYEE parameters
-  int minConsecutiveWork;
-  int maxDailyWork;
-  int minWeeklyWork;
-  int maxWeeklyWork;
-  int maxConsecutiveNightShift;
-  int maxTotalNightShift;
-
+public class CPInstance extends ScheduleParameters {
   IloCP cp;
 
+  String instanceName;
+  // Live counters for jconsole, see SolveStats
+  SolveStats stats;
+
   IloIntVar[][] shiftCodes;
-  // The off shift is denoted by 0 while work shifts, night, day, and evening are
-  // denoted by 1, 2, and 3 respectively.
-  final int OFF_SHIFT = 0;
-  final int NIGHT_SHIFT = 1;
-  final int DAY_SHIFT = 2;
-  final int EVENING_SHIFT = 3;
 
   IloIntVar[][] hoursWorked;
 
+  // Two-stage mode: CP only decides shiftCodes (with aggregate bounds on the
+  // hours those shifts can provide) and HoursAssigner picks the durations
+  // afterwards. hoursWorked stays null, so only search methods that can do
+  // without it (FastButBoring) work in this mode; setSearchMethod() rejects
+  // the others.
+  boolean twoStage = false;
+  int[][] assignedHours;
+
   int[] validWorkDurations = new int[] { 0, 4, 5, 6, 7, 8 };
 
   Random rand = new Random(System.nanoTime());
 
+  // One of the names the setSearchMethod* methods below return
+  String searchMethod = "FastButBoring";
+
+  // Hand CP a greedy schedule as a starting point before the restart loop.
+  // Off by default until it's been timed against the plain search.
+  boolean useWarmStart = false;
+
+  // Which constraint families get posted, and their inference levels
+  ModelConfig config = new ModelConfig();
+
+  // Give up on the restart loop after this many seconds (0 = never). In
+  // explain mode this is the whole budget, split with the conflict refiner.
+  double timeBudget = 0;
+  boolean hasSolution;
+
+  // Explain mode: constraints are posted in named groups (one family for one
+  // day or employee) so that if the restart loop gets nowhere within the
+  // budget, refineConflict() can tell us which groups can't hold together.
+  // Needs a positive timeBudget and doesn't work with twoStage (its nogoods
+  // would be hidden hard constraints for the refiner).
+  boolean explain = false;
+  LinkedHashMap<String, ArrayList<IloConstraint>> constraintGroups = new LinkedHashMap<>();
+  IloConstraint[] groupConstraints;
+  String[] groupNames;
+  String[] shiftNames = new String[] { "off", "night", "day", "evening" };
+
   public CPInstance(String fileName) {
-    try {
-      Scanner read = new Scanner(new File(fileName));
-
-      while (read.hasNextLine()) {
-        String line = read.nextLine();
-        String[] values = line.split(" ");
-        if (values[0].equals("Business_numWeeks:")) {
-          numWeeks = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Business_numDays:")) {
-          numDays = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Business_numEmployees:")) {
-          numEmployees = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Business_numShifts:")) {
-          numShifts = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Business_numIntervalsInDay:")) {
-          numIntervalsInDay = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Business_minDemandDayShift:")) {
-          int index = 1;
-          minDemandDayShift = new int[numDays][numShifts];
-          for (int d = 0; d < numDays; d++)
-            for (int s = 0; s < numShifts; s++)
-              minDemandDayShift[d][s] = Integer.parseInt(values[index++]);
-        } else if (values[0].equals("Business_minDailyOperation:")) {
-          minDailyOperation = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Employee_minConsecutiveWork:")) {
-          minConsecutiveWork = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Employee_maxDailyWork:")) {
-          maxDailyWork = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Employee_minWeeklyWork:")) {
-          minWeeklyWork = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Employee_maxWeeklyWork:")) {
-          maxWeeklyWork = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Employee_maxConsecutiveNigthShift:")) {
-          maxConsecutiveNightShift = Integer.parseInt(values[1]);
-        } else if (values[0].equals("Employee_maxTotalNigthShift:")) {
-          maxTotalNightShift = Integer.parseInt(values[1]);
-        }
-      }
-    } catch (FileNotFoundException e) {
-      System.out.println("Error: file not found " + fileName);
-    }
+    super(fileName);
+    instanceName = new File(fileName).getName();
   }
 
   public void solve() {
+    stats = SolveStats.register(instanceName);
     try {
       cp = new IloCP();
 
-      hoursWorked = new IloIntVar[numEmployees][numDays];
+      hoursWorked = twoStage ? null : new IloIntVar[numEmployees][numDays];
       shiftCodes = new IloIntVar[numEmployees][numDays];
 
       // Implicit in structure:
@@ -106,13 +89,15 @@ public class CPInstance {
 
       for (int employee = 0; employee < numEmployees; employee++) {
         shiftCodes[employee] = cp.intVarArray(numDays, 0, 3);
+        if (twoStage)
+          continue;
 
         // employees cannot work more than 8 hours per day
         // employees to work at least 4 consecutive hours
         hoursWorked[employee] = cp.intVarArray(numDays, validWorkDurations, "");
 
-        for (int day = 0; day < numDays; day++) {
-          cp.add(cp.eq(
+        for (int day = 0; day < numDays && config.isOn(Family.CHANNELING); day++) {
+          post("employee " + employee + " off means 0 hours", cp.eq(
               cp.eq(shiftCodes[employee][day], OFF_SHIFT),
               cp.eq(hoursWorked[employee][day], 0)));
         }
@@ -120,48 +105,48 @@ public class CPInstance {
 
       // minDemandDayShift[0][2]=4 means that there needs to be at least 4 employees
       // working for the day shift on the first day.
-      for (int day = 0; day < numDays; day++) {
+      for (int day = 0; day < numDays && config.isOn(Family.SHIFT_COUNT); day++) {
         IloIntVar[] shiftsThisDay = new IloIntVar[numEmployees];
         for (int employee = 0; employee < numEmployees; employee++) {
           shiftsThisDay[employee] = shiftCodes[employee][day];
         }
 
-        if (minDemandDayShift[day][OFF_SHIFT] > 0)
-          cp.add(cp.ge(cp.count(shiftsThisDay, OFF_SHIFT), minDemandDayShift[day][0]));
-        if (minDemandDayShift[day][NIGHT_SHIFT] > 0)
-          cp.add(cp.ge(cp.count(shiftsThisDay, NIGHT_SHIFT), minDemandDayShift[day][1]));
-        if (minDemandDayShift[day][DAY_SHIFT] > 0)
-          cp.add(cp.ge(cp.count(shiftsThisDay, DAY_SHIFT), minDemandDayShift[day][2]));
-        if (minDemandDayShift[day][EVENING_SHIFT] > 0)
-          cp.add(cp.ge(cp.count(shiftsThisDay, EVENING_SHIFT), minDemandDayShift[day][3]));
+        for (int shift = OFF_SHIFT; shift <= EVENING_SHIFT; shift++) {
+          if (minDemandDayShift[day][shift] > 0)
+            post("day " + day + " " + shiftNames[shift] + " demand",
+                cp.ge(cp.count(shiftsThisDay, shift), minDemandDayShift[day][shift]));
+        }
       }
 
+      if (twoStage)
+        addShiftLevelHourBounds();
+
       // there is a minimum demand that needs to be met to ensure the daily operation
       // (minDailyOperation) for every day
-      for (int day = 0; day < numDays; day++) {
+      for (int day = 0; day < numDays && !twoStage; day++) {
         IloIntVar[] hoursWorkedThisDay = new IloIntVar[numEmployees];
         for (int employee = 0; employee < numEmployees; employee++) {
           hoursWorkedThisDay[employee] = hoursWorked[employee][day];
         }
-        cp.add(cp.ge(cp.sum(hoursWorkedThisDay), minDailyOperation));
+        post("day " + day + " minDailyOperation", cp.ge(cp.sum(hoursWorkedThisDay), minDailyOperation));
       }
 
       // In order to get employees up to speed with the manufacturing process, the rst
       // 4 days of the schedule is treated specially where employees are assigned to
       // unique shifts.
-      for (int employee = 0; employee < numEmployees; employee++) {
+      for (int employee = 0; employee < numEmployees && config.isOn(Family.ALL_DIFF); employee++) {
         // I'm assuming that the number of days is always more than 3
         IloIntVar[] first4days = new IloIntVar[] {
             shiftCodes[employee][0], shiftCodes[employee][1],
             shiftCodes[employee][2], shiftCodes[employee][3]
         };
-        cp.add(cp.allDiff(first4days));
+        post("employee " + employee + " orientation", cp.allDiff(first4days));
       }
 
       // the total number of hours an employee works cannot exceed the standard
       // 40-hours per week and it should not be less than 20-hours
       // I'm assuming that the number of days is always number of weeks * 7
-      for (int weekNumber = 0; weekNumber < numWeeks; weekNumber++) {
+      for (int weekNumber = 0; weekNumber < numWeeks && !twoStage && config.isOn(Family.WEEKLY_RANGE); weekNumber++) {
         for (int employee = 0; employee < numEmployees; employee++) {
           int offset = 7 * weekNumber;
           IloIntVar[] hoursWorkedThisWeek = new IloIntVar[] {
@@ -170,7 +155,8 @@ public class CPInstance {
               hoursWorked[employee][offset + 4], hoursWorked[employee][offset + 5],
               hoursWorked[employee][offset + 6]
           };
-          cp.add(cp.range(20, cp.sum(hoursWorkedThisWeek), 40));
+          post("employee " + employee + " week " + weekNumber + " hours",
+              cp.range(20, cp.sum(hoursWorkedThisWeek), 40));
         }
       }
 
@@ -183,7 +169,7 @@ public class CPInstance {
       // other value other than maxConsecutiveNightShift=1
       for (int employee = 0; employee < numEmployees; employee++) {
         for (int day = 0; day < numDays - 1; day++) {
-          cp.add(cp.imply(cp.eq(shiftCodes[employee][day], NIGHT_SHIFT),
+          post("employee " + employee + " consecutive nights", cp.imply(cp.eq(shiftCodes[employee][day], NIGHT_SHIFT),
               cp.neq(shiftCodes[employee][day + 1], NIGHT_SHIFT)));
         }
       }
@@ -191,21 +177,37 @@ public class CPInstance {
       // there is a limit on the total number of night shifts that an employee can
       // perform (maxTotalNigthShift) across the scheduling horizon.
       for (int employee = 0; employee < numEmployees; employee++) {
-        cp.add(cp.le(cp.count(shiftCodes[employee], NIGHT_SHIFT), maxTotalNightShift));
+        post("employee " + employee + " maxTotalNightShift",
+            cp.le(cp.count(shiftCodes[employee], NIGHT_SHIFT), maxTotalNightShift));
       }
 
       // Important: Do not change! Keep these parameters as is
       cp.setParameter(IloCP.IntParam.Workers, 1);
       cp.setParameter(IloCP.DoubleParam.TimeLimit, 300);
+      if (timeBudget > 0)
+        cp.setParameter(IloCP.DoubleParam.TimeLimit, Math.min(300, searchBudget()));
 
       cp.setParameter(IloCP.IntParam.LogVerbosity, IloCP.ParameterValues.Quiet);
+      setInferenceLevel(IloCP.IntParam.CountInferenceLevel, config.get(Family.SHIFT_COUNT));
+      setInferenceLevel(IloCP.IntParam.AllDiffInferenceLevel, config.get(Family.ALL_DIFF));
+      setInferenceLevel(IloCP.IntParam.DefaultInferenceLevel, config.get(Family.SUM));
 
       // We're not going to use IBM's intelligent proproetary search, but rather
       // out own modified dfs search (just to make it interesting!)
       cp.setParameter(IloCP.IntParam.SearchType, IloCP.ParameterValues.DepthFirst);
-      String filenameSuffix = setSearchMethodToFastButBoring();
+      String filenameSuffix = setSearchMethod(searchMethod);
+      stats.setSearchMethod(filenameSuffix);
 
-      addSymmetryBreaks();
+      // The ordering only prunes equivalent schedules, it isn't part of the
+      // problem: leave it out when explaining, or the refiner could blame it
+      // for conflicts that only exist between it and specific employees
+      if (config.isOn(Family.SYMMETRY) && !explain)
+        addSymmetryBreaks();
+      if (explain)
+        postGroups();
+
+      if (useWarmStart)
+        setGreedyStartingPoint();
 
       // Feel free to comment this part out if you're using a search method that
       // doesn't make use of randomization (you'll still have to make use of hasSolved
@@ -215,33 +217,205 @@ public class CPInstance {
       int runCount = 0;
       int limitIncreaseThreshold = 100 * numWeeks;
       cp.setParameter(IloCP.IntParam.FailLimit, (int) failLimit);
-      boolean hasSolved = cp.solve();
+      stats.setFailLimit((int) failLimit);
+      boolean hasSolved = solveOnce();
+      recordRunStats();
 
-      while (!hasSolved) {
+      while (!hasSolved && !isOverBudget() && !isProvenInfeasible()) {
         if (runCount % limitIncreaseThreshold == 0) {
           failLimit *= failLimitMultiplier;
           cp.setParameter(IloCP.IntParam.FailLimit, (int) failLimit);
+          stats.setFailLimit((int) failLimit);
           System.out.println("Restarting with restart limit: " +
               (int) failLimit + " for " + limitIncreaseThreshold + " runs.");
         }
 
-        cp.setParameter(IloCP.IntParam.RandomSeed, rand.nextInt(20000000));
-        hasSolved = cp.solve();
+        int seed = rand.nextInt(20000000);
+        cp.setParameter(IloCP.IntParam.RandomSeed, seed);
+        stats.setSeed(seed);
+        hasSolved = solveOnce();
+        recordRunStats();
         runCount++;
+        stats.recordRestart();
       }
 
+      hasSolution = hasSolved;
       if (hasSolved) {
         cp.printInformation();
         //IOHelper.generateVisualizerInput(numEmployees, numDays, this, filenameSuffix);
       } else {
         System.out.println("No Solution found!");
         System.out.println("Number of fails: " + cp.getInfo(IloCP.IntInfo.NumberOfFails));
+        if (explain)
+          explainConflict();
       }
     } catch (IloException e) {
       System.out.println("Error: " + e);
+    } finally {
+      stats.unregister();
     }
   }
 
+  /**
+   * One run of the restart loop. In two-stage mode a CP solution only counts
+   * if HoursAssigner can also give its shifts valid durations; if it can't, we
+   * rule out that exact shift matrix (so CP can't hand it back to us) and move
+   * on to the next restart. That's only a backstop: addShiftLevelHourBounds()
+   * already keeps CP away from most shift matrices without valid hours.
+   */
+  boolean solveOnce() throws IloException {
+    if (!cp.solve())
+      return false;
+    if (!twoStage)
+      return true;
+
+    int[][] shifts = getShiftValues();
+    assignedHours = new HoursAssigner(this).assign(shifts);
+    if (assignedHours == null) {
+      System.out.println("Shifts found, but no valid hours for them. Restarting.");
+      addShiftNogood(shifts);
+      stats.recordRejectedShiftAssignment();
+      return false;
+    }
+    return true;
+  }
+
+  // At least one employee-day has to differ from the given shifts
+  void addShiftNogood(int[][] shifts) throws IloException {
+    IloConstraint[] differences = new IloConstraint[numEmployees * numDays];
+    int index = 0;
+    for (int employee = 0; employee < numEmployees; employee++)
+      for (int day = 0; day < numDays; day++)
+        differences[index++] = cp.neq(shiftCodes[employee][day], shifts[employee][day]);
+    cp.add(cp.or(differences));
+  }
+
+  /**
+   * What's left of the hour constraints when CP doesn't see the hours: every
+   * shift is 4-8 hours, so a day needs enough people working to possibly reach
+   * minDailyOperation, and an employee needs enough work days in a week to
+   * possibly reach 20 hours (at most 7 days of 4 hours never exceeds 40).
+   * On top of that, a week's shifts have to be able to deliver the week's
+   * operating hours: employee e can give at most min(40, 8 * workDays(e)).
+   */
+  void addShiftLevelHourBounds() throws IloException {
+    int minWorkersPerDay = (minDailyOperation + maxDailyWork - 1) / maxDailyWork;
+    for (int day = 0; day < numDays; day++) {
+      IloIntVar[] shiftsThisDay = new IloIntVar[numEmployees];
+      for (int employee = 0; employee < numEmployees; employee++) {
+        shiftsThisDay[employee] = shiftCodes[employee][day];
+      }
+      post("day " + day + " workers for minDailyOperation",
+          cp.le(cp.count(shiftsThisDay, OFF_SHIFT), numEmployees - minWorkersPerDay));
+    }
+
+    int minWorkDaysPerWeek = (minWeeklyWork + maxDailyWork - 1) / maxDailyWork;
+    int maxWorkDaysPerWeek = maxWeeklyWork / minConsecutiveWork;
+    for (int weekNumber = 0; weekNumber < numWeeks; weekNumber++) {
+      IloIntExpr[] weekCapacity = new IloIntExpr[numEmployees];
+      for (int employee = 0; employee < numEmployees; employee++) {
+        IloIntVar[] shiftsThisWeek = new IloIntVar[7];
+        for (int day = 0; day < 7; day++)
+          shiftsThisWeek[day] = shiftCodes[employee][7 * weekNumber + day];
+        String group = "employee " + employee + " week " + weekNumber + " work days";
+        post(group, cp.le(cp.count(shiftsThisWeek, OFF_SHIFT), 7 - minWorkDaysPerWeek));
+        if (maxWorkDaysPerWeek < 7)
+          post(group, cp.ge(cp.count(shiftsThisWeek, OFF_SHIFT), 7 - maxWorkDaysPerWeek));
+        weekCapacity[employee] = cp.min(cp.prod(maxDailyWork, cp.diff(7, cp.count(shiftsThisWeek, OFF_SHIFT))),
+            maxWeeklyWork);
+      }
+      post("week " + weekNumber + " hour capacity", cp.ge(cp.sum(weekCapacity), 7 * minDailyOperation));
+    }
+  }
+
+  /**
+   * A run that ends without a solution before hitting its fail limit has
+   * searched everything, so more restarts won't help.
+   */
+  boolean isProvenInfeasible() throws IloException {
+    return cp.getStatus() == IloAlgorithm.Status.Infeasible;
+  }
+
+  // Adds a constraint to the model directly, or to its group in explain mode
+  void post(String group, IloConstraint constraint) throws IloException {
+    if (!explain) {
+      cp.add(constraint);
+      return;
+    }
+    if (!constraintGroups.containsKey(group))
+      constraintGroups.put(group, new ArrayList<>());
+    constraintGroups.get(group).add(constraint);
+  }
+
+  // Posts every group as a single named constraint
+  void postGroups() throws IloException {
+    groupConstraints = new IloConstraint[constraintGroups.size()];
+    groupNames = new String[constraintGroups.size()];
+    int index = 0;
+    for (Map.Entry<String, ArrayList<IloConstraint>> group : constraintGroups.entrySet()) {
+      groupNames[index] = group.getKey();
+      groupConstraints[index] = cp.and(group.getValue().toArray(new IloConstraint[0]), group.getKey());
+      cp.add(groupConstraints[index]);
+      index++;
+    }
+  }
+
+  /**
+   * Asks CP for a minimal set of constraint groups that can't all hold at
+   * once and prints it, e.g. "day 9 night demand + employee 3
+   * maxTotalNightShift + ...". If the refiner runs out of time we print the
+   * groups it hasn't ruled out yet instead.
+   */
+  void explainConflict() throws IloException {
+    System.out.println("Refining conflict over " + groupConstraints.length + " constraint groups...");
+    // The restart loop's fail limit would stop the refiner too
+    cp.setParameter(IloCP.IntParam.FailLimit, IloCP.IntMax);
+    // Whatever the restart loop left of the budget
+    cp.setParameter(IloCP.DoubleParam.TimeLimit, Math.max(1, timeBudget - stats.getElapsedSeconds()));
+
+    boolean found = cp.refineConflict(groupConstraints);
+    ArrayList<String> members = new ArrayList<>();
+    ArrayList<String> possibleMembers = new ArrayList<>();
+    for (int index = 0; index < groupConstraints.length; index++) {
+      IloCP.ConflictStatus status = cp.getConflict(groupConstraints[index]);
+      if (status == IloCP.ConflictStatus.ConflictMember)
+        members.add(groupNames[index]);
+      else if (status == IloCP.ConflictStatus.ConflictPossibleMember)
+        possibleMembers.add(groupNames[index]);
+    }
+
+    if (!found) {
+      System.out.println("No conflict found: the instance looks feasible, just hard (or the refiner ran out of time)");
+    } else if (possibleMembers.isEmpty()) {
+      System.out.println("Minimal conflict (" + members.size() + " groups): " + String.join(" + ", members));
+    } else {
+      System.out.println("Conflict (not fully minimized, " + (members.size() + possibleMembers.size()) + " groups): "
+          + String.join(" + ", members) + (members.isEmpty() ? "" : " + ") + "possibly "
+          + String.join(" + ", possibleMembers));
+    }
+  }
+
+  // In explain mode the restart loop only gets the first half of the budget
+  double searchBudget() {
+    return explain ? timeBudget / 2 : timeBudget;
+  }
+
+  boolean isOverBudget() {
+    return timeBudget > 0 && stats.getElapsedSeconds() >= searchBudget();
+  }
+
+  // DEFAULT leaves IloCP's own choice alone; OFF doesn't post the family at all
+  void setInferenceLevel(IloCP.IntParam parameter, Setting setting) throws IloException {
+    if (setting == Setting.MEDIUM)
+      cp.setParameter(parameter, IloCP.ParameterValues.Medium);
+    else if (setting == Setting.EXTENDED)
+      cp.setParameter(parameter, IloCP.ParameterValues.Extended);
+  }
+
+  void recordRunStats() throws IloException {
+    stats.recordRun(cp.getInfo(IloCP.IntInfo.NumberOfFails), cp.getInfo(IloCP.IntInfo.NumberOfBranches));
+  }
+
   public String getEmployeeHours() {
     String hours = "";
     for (int employee = 0; employee < numEmployees; employee++) {
@@ -258,14 +432,56 @@ public class CPInstance {
       case 0:
         return new int[] { -1, -1 };
       case 1:
-        return new int[] { 0, cp.getIntValue(hoursWorked[employee][day]) };
+        return new int[] { 0, getHoursWorked(employee, day) };
       case 2:
-        return new int[] { 8, 8 + cp.getIntValue(hoursWorked[employee][day]) };
+        return new int[] { 8, 8 + getHoursWorked(employee, day) };
       default:
-        return new int[] { 16, 16 + cp.getIntValue(hoursWorked[employee][day]) };
+        return new int[] { 16, 16 + getHoursWorked(employee, day) };
     }
   }
 
+  public int[][] getShiftValues() {
+    int[][] shifts = new int[numEmployees][numDays];
+    for (int employee = 0; employee < numEmployees; employee++)
+      for (int day = 0; day < numDays; day++)
+        shifts[employee][day] = cp.getIntValue(shiftCodes[employee][day]);
+    return shifts;
+  }
+
+  public int[][] getHoursValues() {
+    int[][] hours = new int[numEmployees][numDays];
+    for (int employee = 0; employee < numEmployees; employee++)
+      for (int day = 0; day < numDays; day++)
+        hours[employee][day] = getHoursWorked(employee, day);
+    return hours;
+  }
+
+  public int getHoursWorked(int employee, int day) {
+    if (twoStage)
+      return assignedHours[employee][day];
+    return cp.getIntValue(hoursWorked[employee][day]);
+  }
+
+  /**
+   * Builds a schedule with GreedyWarmStart and gives it to CP as a starting
+   * point, so the search begins near a solution instead of from scratch.
+   * The greedy schedule may be slightly infeasible; that's fine for this.
+   */
+  void setGreedyStartingPoint() throws IloException {
+    GreedyWarmStart warmStart = new GreedyWarmStart(this, rand);
+    warmStart.build();
+
+    IloSolution startingPoint = cp.solution();
+    for (int employee = 0; employee < numEmployees; employee++) {
+      for (int day = 0; day < numDays; day++) {
+        startingPoint.setValue(shiftCodes[employee][day], warmStart.shifts[employee][day]);
+        if (!twoStage)
+          startingPoint.setValue(hoursWorked[employee][day], warmStart.hours[employee][day]);
+      }
+    }
+    cp.setStartingPoint(startingPoint);
+  }
+
   void addSymmetryBreaks() throws IloException {
     // Sort them based on their first 2 days (there's enough entropy there to add
     // some structure...);
@@ -307,6 +523,31 @@ public class CPInstance {
     return x_flat;
   }
 
+  static boolean supportsTwoStage(String name) {
+    return name.equals("FastButBoring");
+  }
+
+  String setSearchMethod(String name) throws IloException {
+    if (twoStage && !supportsTwoStage(name))
+      throw new IloException("Search method " + name + " needs hoursWorked, so it doesn't work with --twoStage");
+    switch (name) {
+      case "defaultSearch":
+        return setSearchMethodToDefault();
+      case "DayEveningBiasFirstAttempt":
+        return setSearchMethodDayEveningBiasFirstAttempt();
+      case "DayEveningBiasFirstAttemptRandomOff":
+        return setSearchMethodDayEveningBiasRandomOff();
+      case "CoreStaffSupportStaff":
+        return setSearchMethodCoreStaffSupportStaff();
+      case "CoreStaffSupportStaffBadOffwork":
+        return setSearchMethodCoreStaffSupportStaffBadOffwork();
+      case "FastButBoring":
+        return setSearchMethodToFastButBoring();
+      default:
+        throw new IloException("Unknown search method: " + name);
+    }
+  }
+
   String setSearchMethodToDefault() throws IloException {
     return "defaultSearch";
   }
@@ -495,9 +736,10 @@ public class CPInstance {
     phases.add(cp.searchPhase(
         genericMatrixFlattener(shiftCodes),
         cp.intVarChooser(varSel), cp.intValueChooser(shiftValSel)));
-    phases.add(cp.searchPhase(
-        genericMatrixFlattener(hoursWorked),
-        cp.intVarChooser(varSel), cp.intValueChooser(hourValSel)));
+    if (!twoStage)
+      phases.add(cp.searchPhase(
+          genericMatrixFlattener(hoursWorked),
+          cp.intVarChooser(varSel), cp.intValueChooser(hourValSel)));
 
     cp.setSearchPhases(phases.toArray(IloSearchPhase[]::new));
     return "FastButBoring";
@@ -0,0 +1,416 @@
+package solver.cp;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * Fast constructive heuristic that builds a (hopefully almost) feasible
+ * schedule day by day, so CP can start its search near a solution instead of
+ * having to discover the demand structure through failures.
+ *
+ * It tries to respect:
+ * - minDemandDayShift for every day
+ * - the orientation allDiff over the first 4 days
+ * - no night shift right after a night shift, and maxTotalNightShift
+ * - 20-40 hours per employee-week and minDailyOperation
+ * but it never backtracks, so the result can be slightly infeasible. That's
+ * fine for a starting point.
+ */
+public class GreedyWarmStart {
+  final CPInstance instance;
+  final Random rand;
+
+  int[][] shifts;
+  int[][] hours;
+
+  // Bookkeeping while building
+  int[] nightsSoFar;
+  int[][] workDaysInWeek;
+  // Hours each employee-week has been booked for so far. A finished day only
+  // books what it needs (see bookDay), so early days don't use up the
+  // weekly caps that later days depend on.
+  int[][] plannedWeekHours;
+
+  // Each work shift is 8 hours long at most, so at least 3 days a week are
+  // needed to get to 20 hours
+  static final int MIN_WORK_DAYS_PER_WEEK = 3;
+
+  public GreedyWarmStart(CPInstance instance, Random rand) {
+    this.instance = instance;
+    this.rand = rand;
+  }
+
+  /**
+   * Builds the schedule. Afterwards, shifts[e][d] holds a shift code and
+   * hours[e][d] the hours worked (0 for the off shift).
+   */
+  public void build() {
+    int numEmployees = instance.numEmployees;
+    int numDays = instance.numDays;
+    shifts = new int[numEmployees][numDays];
+    hours = new int[numEmployees][numDays];
+    nightsSoFar = new int[numEmployees];
+    workDaysInWeek = new int[numEmployees][instance.numWeeks];
+    plannedWeekHours = new int[numEmployees][instance.numWeeks];
+
+    assignOrientationDays();
+    for (int day = 0; day < 4; day++)
+      bookDay(day);
+    for (int day = 4; day < numDays; day++) {
+      assignDay(day);
+      bookDay(day);
+    }
+    addWorkersWhereShort();
+    assignHours();
+    sortForSymmetryBreaks();
+  }
+
+  /**
+   * Over the first 4 days every employee has to do every shift exactly once,
+   * i.e. each employee gets one of the 24 permutations of the shift codes.
+   * Employees pick, one at a time, the permutation that covers the most
+   * still-unmet demand, while spreading the off days out evenly.
+   */
+  void assignOrientationDays() {
+    int[][] unmet = new int[4][instance.numShifts];
+    for (int day = 0; day < 4; day++)
+      unmet[day] = instance.minDemandDayShift[day].clone();
+    int[] offPerDay = new int[4];
+
+    int[][] permutations = shiftPermutations();
+    for (int employee : shuffledEmployees()) {
+      int[] best = null;
+      int bestScore = Integer.MIN_VALUE;
+      for (int[] permutation : permutations) {
+        int score = rand.nextInt(2);
+        for (int day = 0; day < 4; day++) {
+          if (unmet[day][permutation[day]] > 0)
+            score += 10 * instance.numEmployees;
+          if (permutation[day] == instance.OFF_SHIFT)
+            score -= offPerDay[day];
+        }
+        if (score > bestScore) {
+          best = permutation;
+          bestScore = score;
+        }
+      }
+
+      for (int day = 0; day < 4; day++) {
+        assign(employee, day, best[day]);
+        unmet[day][best[day]]--;
+        if (best[day] == instance.OFF_SHIFT)
+          offPerDay[day]++;
+      }
+    }
+  }
+
+  static int[][] shiftPermutations() {
+    int[][] permutations = new int[24][];
+    int index = 0;
+    for (int a = 0; a < 4; a++)
+      for (int b = 0; b < 4; b++)
+        for (int c = 0; c < 4; c++)
+          if (a != b && a != c && b != c)
+            permutations[index++] = new int[] { a, b, c, 6 - a - b - c };
+    return permutations;
+  }
+
+  void assignDay(int day) {
+    int numEmployees = instance.numEmployees;
+    int week = day / 7;
+    boolean[] assigned = new boolean[numEmployees];
+
+    for (int shift : shiftsByDemand(day)) {
+      int needed = instance.minDemandDayShift[day][shift];
+      // Night shifts are rationed, so hand them to whoever has used the fewest
+      Integer[] candidates = shift == instance.NIGHT_SHIFT ? employeesByNights(week) : employeesByWorkload(week);
+      for (int employee : candidates) {
+        if (needed == 0)
+          break;
+        if (assigned[employee] || !canTake(employee, day, shift))
+          continue;
+        assign(employee, day, shift);
+        assigned[employee] = true;
+        needed--;
+      }
+    }
+
+    // The rest either work (day or evening, whichever is thinner today) or
+    // take the day off, depending on how much they still need to work this
+    // week and whether the day has enough hours to operate, counting what
+    // each worker can still give this week rather than a full 8 hours.
+    int daysLeftInWeek = 7 * (week + 1) - day;
+    int dayCapacity = 0;
+    for (int employee = 0; employee < numEmployees; employee++)
+      if (assigned[employee])
+        dayCapacity += capacity(employee, week);
+    for (int employee : employeesByWorkload(week)) {
+      if (assigned[employee])
+        continue;
+      int workDays = workDaysInWeek[employee][week];
+      boolean mustWork = workDays + daysLeftInWeek <= MIN_WORK_DAYS_PER_WEEK;
+      boolean dayNeedsHours = dayCapacity < instance.minDailyOperation;
+      boolean hasRoom = capacity(employee, week) >= instance.minConsecutiveWork;
+      if (mustWork || (dayNeedsHours && hasRoom)) {
+        int shift = countOnDay(day, instance.DAY_SHIFT) <= countOnDay(day, instance.EVENING_SHIFT)
+            ? instance.DAY_SHIFT
+            : instance.EVENING_SHIFT;
+        assign(employee, day, shift);
+        dayCapacity += capacity(employee, week);
+      } else {
+        assign(employee, day, instance.OFF_SHIFT);
+      }
+    }
+  }
+
+  // How many hours the employee could still work on one day this week
+  int capacity(int employee, int week) {
+    return Math.max(0, Math.min(instance.maxDailyWork, instance.maxWeeklyWork - plannedWeekHours[employee][week]));
+  }
+
+  /**
+   * Books a finished day against the workers' weekly caps: everyone gets a
+   * minimum-length shift, then the rest of minDailyOperation goes to whoever
+   * has the most room left.
+   */
+  void bookDay(int day) {
+    int week = day / 7;
+    int[] booked = new int[instance.numEmployees];
+    int needed = instance.minDailyOperation;
+    for (int employee = 0; employee < instance.numEmployees; employee++) {
+      if (shifts[employee][day] != instance.OFF_SHIFT) {
+        booked[employee] = instance.minConsecutiveWork;
+        needed -= booked[employee];
+      }
+    }
+    while (needed > 0) {
+      int best = -1;
+      int bestRoom = 0;
+      for (int employee = 0; employee < instance.numEmployees; employee++) {
+        if (shifts[employee][day] == instance.OFF_SHIFT || booked[employee] >= instance.maxDailyWork)
+          continue;
+        int room = instance.maxWeeklyWork - plannedWeekHours[employee][week] - booked[employee];
+        if (room > bestRoom) {
+          best = employee;
+          bestRoom = room;
+        }
+      }
+      if (best < 0)
+        break;
+      booked[best]++;
+      needed--;
+    }
+    for (int employee = 0; employee < instance.numEmployees; employee++)
+      plannedWeekHours[employee][week] += booked[employee];
+  }
+
+  /**
+   * The day-by-day pass can't see the rest of the week, so it can still
+   * leave days (usually the last ones of a week) without enough workers to
+   * reach minDailyOperation. Another worker on a day only ever helps the hour
+   * constraints, so keep adding one to the shortest day (after orientation)
+   * until the shifts can be given valid hours or nobody is left to add.
+   */
+  void addWorkersWhereShort() {
+    while (new HoursAssigner(instance).assign(shifts) == null) {
+      estimateHours();
+      int shortestDay = -1;
+      int employeeToAdd = -1;
+      int biggestDeficit = 0;
+      for (int day = 4; day < instance.numDays; day++) {
+        int deficit = instance.minDailyOperation - hoursOnDay(day);
+        if (deficit <= biggestDeficit)
+          continue;
+        int employee = leastWorkedOffEmployee(day);
+        if (employee >= 0) {
+          shortestDay = day;
+          employeeToAdd = employee;
+          biggestDeficit = deficit;
+        }
+      }
+      if (shortestDay < 0)
+        return;
+      int shift = countOnDay(shortestDay, instance.DAY_SHIFT) <= countOnDay(shortestDay, instance.EVENING_SHIFT)
+          ? instance.DAY_SHIFT
+          : instance.EVENING_SHIFT;
+      assign(employeeToAdd, shortestDay, shift);
+    }
+  }
+
+  // Off on the given day and working the fewest days that week, or -1
+  int leastWorkedOffEmployee(int day) {
+    for (int employee : employeesByWorkload(day / 7))
+      if (shifts[employee][day] == instance.OFF_SHIFT)
+        return employee;
+    return -1;
+  }
+
+  /**
+   * Works out the durations. HoursAssigner gives an exact answer whenever
+   * these shifts can be given valid hours at all; if they can't, fall back
+   * to estimateHours().
+   */
+  void assignHours() {
+    int[][] exact = new HoursAssigner(instance).assign(shifts);
+    if (exact != null)
+      hours = exact;
+    else
+      estimateHours();
+  }
+
+  /**
+   * Heuristic durations: every shift starts at the minimum length, then
+   * hours go one at a time to whichever day of the week is furthest below
+   * minDailyOperation (from the employee with the most weekly room left), so
+   * the weekly caps get spent where they're needed. Whoever is still under
+   * 20 hours after that gets topped up on any of their days.
+   */
+  void estimateHours() {
+    int numEmployees = instance.numEmployees;
+    for (int employee = 0; employee < numEmployees; employee++)
+      for (int day = 0; day < instance.numDays; day++)
+        hours[employee][day] = 0;
+    for (int employee = 0; employee < numEmployees; employee++)
+      for (int day = 0; day < instance.numDays; day++)
+        if (shifts[employee][day] != instance.OFF_SHIFT)
+          hours[employee][day] = instance.minConsecutiveWork;
+
+    for (int week = 0; week < instance.numWeeks; week++) {
+      boolean[] full = new boolean[7];
+      while (true) {
+        int neediest = -1;
+        int biggestDeficit = 0;
+        for (int day = 7 * week; day < 7 * (week + 1); day++) {
+          int deficit = instance.minDailyOperation - hoursOnDay(day);
+          if (!full[day - 7 * week] && deficit > biggestDeficit) {
+            neediest = day;
+            biggestDeficit = deficit;
+          }
+        }
+        if (neediest < 0)
+          break;
+
+        int best = -1;
+        int bestRoom = 0;
+        for (int employee = 0; employee < numEmployees; employee++) {
+          if (shifts[employee][neediest] == instance.OFF_SHIFT || hours[employee][neediest] >= instance.maxDailyWork)
+            continue;
+          int room = instance.maxWeeklyWork - hoursInWeek(employee, week);
+          if (room > bestRoom) {
+            best = employee;
+            bestRoom = room;
+          }
+        }
+        if (best < 0)
+          full[neediest - 7 * week] = true;
+        else
+          hours[best][neediest]++;
+      }
+
+      for (int employee = 0; employee < numEmployees; employee++) {
+        for (int day = 7 * week; day < 7 * (week + 1); day++) {
+          if (shifts[employee][day] == instance.OFF_SHIFT)
+            continue;
+          int extra = Math.min(instance.maxDailyWork - hours[employee][day],
+              instance.minWeeklyWork - hoursInWeek(employee, week));
+          if (extra > 0)
+            hours[employee][day] += extra;
+        }
+      }
+    }
+  }
+
+  /**
+   * Employees are interchangeable, so we can reorder them to match the
+   * ordering CPInstance.addSymmetryBreaks() imposes on the first 2 days.
+   */
+  void sortForSymmetryBreaks() {
+    Integer[] order = new Integer[instance.numEmployees];
+    for (int employee = 0; employee < order.length; employee++)
+      order[employee] = employee;
+    Arrays.sort(order, Comparator.comparingInt(e -> 1000 * shifts[e][0] + 100 * shifts[e][1]));
+
+    int[][] sortedShifts = new int[order.length][];
+    int[][] sortedHours = new int[order.length][];
+    for (int i = 0; i < order.length; i++) {
+      sortedShifts[i] = shifts[order[i]];
+      sortedHours[i] = hours[order[i]];
+    }
+    shifts = sortedShifts;
+    hours = sortedHours;
+  }
+
+  boolean canTake(int employee, int day, int shift) {
+    if (shift != instance.NIGHT_SHIFT)
+      return true;
+    if (nightsSoFar[employee] >= instance.maxTotalNightShift)
+      return false;
+    return day == 0 || shifts[employee][day - 1] != instance.NIGHT_SHIFT;
+  }
+
+  void assign(int employee, int day, int shift) {
+    shifts[employee][day] = shift;
+    if (shift == instance.NIGHT_SHIFT)
+      nightsSoFar[employee]++;
+    if (shift != instance.OFF_SHIFT)
+      workDaysInWeek[employee][day / 7]++;
+  }
+
+  Integer[] shiftsByDemand(int day) {
+    Integer[] order = new Integer[] { instance.NIGHT_SHIFT, instance.DAY_SHIFT, instance.EVENING_SHIFT,
+        instance.OFF_SHIFT };
+    Arrays.sort(order, Comparator.comparingInt(s -> -instance.minDemandDayShift[day][s]));
+    return order;
+  }
+
+  Integer[] shuffledEmployees() {
+    Integer[] order = new Integer[instance.numEmployees];
+    for (int employee = 0; employee < order.length; employee++)
+      order[employee] = employee;
+    for (int i = order.length - 1; i > 0; i--) {
+      int j = rand.nextInt(i + 1);
+      Integer tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+    return order;
+  }
+
+  // Least worked this week first (ties broken randomly, then by fewest nights)
+  Integer[] employeesByWorkload(int week) {
+    Integer[] order = shuffledEmployees();
+    Arrays.sort(order, Comparator.<Integer>comparingInt(e -> workDaysInWeek[e][week])
+        .thenComparingInt(e -> nightsSoFar[e]));
+    return order;
+  }
+
+  Integer[] employeesByNights(int week) {
+    Integer[] order = shuffledEmployees();
+    Arrays.sort(order, Comparator.<Integer>comparingInt(e -> nightsSoFar[e])
+        .thenComparingInt(e -> workDaysInWeek[e][week]));
+    return order;
+  }
+
+  int countOnDay(int day, int shift) {
+    int count = 0;
+    for (int employee = 0; employee < instance.numEmployees; employee++)
+      if (shifts[employee][day] == shift)
+        count++;
+    return count;
+  }
+
+  int hoursOnDay(int day) {
+    int total = 0;
+    for (int employee = 0; employee < instance.numEmployees; employee++)
+      total += hours[employee][day];
+    return total;
+  }
+
+  int hoursInWeek(int employee, int week) {
+    int total = 0;
+    for (int day = 7 * week; day < 7 * (week + 1); day++)
+      total += hours[employee][day];
+    return total;
+  }
+}
@@ -0,0 +1,184 @@
+package solver.cp;
+
+import java.util.Arrays;
+
+/**
+ * Second stage of the two-stage solve: given the shift codes CP picked, work
+ * out how many hours everyone works.
+ *
+ * Once the shifts are fixed, the only thing the durations still have to do is
+ * meet sums (every shift 4-8 hours, 20-40 hours per employee-week and at least
+ * minDailyOperation hours per day). That's a flow problem with lower bounds:
+ *
+ * source -[20,40]-> (employee, week) -[4,8]-> day -[minDailyOperation,inf)-> sink
+ *
+ * with one middle edge per worked shift, so we can answer it exactly with a
+ * max flow instead of backtracking over hours inside the CP search.
+ */
+public class HoursAssigner {
+  final CPInstance instance;
+
+  // Flow network (edges are stored in pairs: edge i and its reverse i ^ 1)
+  int numNodes;
+  int[] head;
+  int[] next;
+  int[] to;
+  int[] capacity;
+  int numEdges;
+
+  // For Dinic's algorithm
+  int[] level;
+  int[] currentEdge;
+  int[] queue;
+
+  public HoursAssigner(CPInstance instance) {
+    this.instance = instance;
+  }
+
+  /**
+   * Returns hours[employee][day] for the given shifts, or null if there is no
+   * way to give these shifts valid durations.
+   */
+  public int[][] assign(int[][] shifts) {
+    int numEmployees = instance.numEmployees;
+    int numDays = instance.numDays;
+    int numWeeks = instance.numWeeks;
+    int minShift = instance.minConsecutiveWork;
+    int maxShift = instance.maxDailyWork;
+
+    // Nodes: employee-weeks, then days, then source/sink, then the extra
+    // source/sink used to get rid of the lower bounds
+    int source = numEmployees * numWeeks + numDays;
+    int sink = source + 1;
+    int superSource = sink + 1;
+    int superSink = superSource + 1;
+    numNodes = superSink + 1;
+
+    int maxEdges = 2 * (numEmployees * numWeeks + numEmployees * numDays + numDays + 1 + numNodes);
+    head = new int[numNodes];
+    Arrays.fill(head, -1);
+    next = new int[maxEdges];
+    to = new int[maxEdges];
+    capacity = new int[maxEdges];
+    numEdges = 0;
+
+    // excess[v] = (lower bounds coming in) - (lower bounds going out)
+    int[] excess = new int[numNodes];
+    int infinity = maxShift * numEmployees * numDays;
+
+    for (int employee = 0; employee < numEmployees; employee++) {
+      for (int week = 0; week < numWeeks; week++) {
+        int employeeWeek = employee * numWeeks + week;
+        addEdge(source, employeeWeek, instance.minWeeklyWork, instance.maxWeeklyWork, excess);
+      }
+    }
+
+    int[][] shiftEdge = new int[numEmployees][numDays];
+    for (int employee = 0; employee < numEmployees; employee++) {
+      for (int day = 0; day < numDays; day++) {
+        shiftEdge[employee][day] = -1;
+        if (shifts[employee][day] == instance.OFF_SHIFT)
+          continue;
+        int employeeWeek = employee * numWeeks + day / 7;
+        shiftEdge[employee][day] = addEdge(employeeWeek, numEmployees * numWeeks + day, minShift, maxShift, excess);
+      }
+    }
+
+    for (int day = 0; day < numDays; day++)
+      addEdge(numEmployees * numWeeks + day, sink, instance.minDailyOperation, infinity, excess);
+    addEdge(sink, source, 0, infinity, excess);
+
+    int required = 0;
+    for (int node = 0; node < superSource; node++) {
+      if (excess[node] > 0) {
+        addEdge(superSource, node, 0, excess[node], null);
+        required += excess[node];
+      } else if (excess[node] < 0) {
+        addEdge(node, superSink, 0, -excess[node], null);
+      }
+    }
+
+    if (maxFlow(superSource, superSink) < required)
+      return null;
+
+    // Flow on a shift edge = lower bound + whatever went through it, which is
+    // what's sitting on its reverse edge
+    int[][] hours = new int[numEmployees][numDays];
+    for (int employee = 0; employee < numEmployees; employee++)
+      for (int day = 0; day < numDays; day++)
+        if (shiftEdge[employee][day] >= 0)
+          hours[employee][day] = minShift + capacity[shiftEdge[employee][day] ^ 1];
+    return hours;
+  }
+
+  /**
+   * Adds an edge that must carry between lower and upper units of flow, and
+   * returns its index. Lower bounds are turned into node excesses.
+   */
+  int addEdge(int from, int target, int lower, int upper, int[] excess) {
+    if (excess != null) {
+      excess[target] += lower;
+      excess[from] -= lower;
+    }
+    int index = numEdges;
+    addArc(from, target, upper - lower);
+    addArc(target, from, 0);
+    return index;
+  }
+
+  void addArc(int from, int target, int cap) {
+    to[numEdges] = target;
+    capacity[numEdges] = cap;
+    next[numEdges] = head[from];
+    head[from] = numEdges++;
+  }
+
+  int maxFlow(int source, int sink) {
+    level = new int[numNodes];
+    currentEdge = new int[numNodes];
+    queue = new int[numNodes];
+    int flow = 0;
+    while (buildLevels(source, sink)) {
+      System.arraycopy(head, 0, currentEdge, 0, numNodes);
+      int pushed;
+      while ((pushed = augment(source, sink, Integer.MAX_VALUE)) > 0)
+        flow += pushed;
+    }
+    return flow;
+  }
+
+  boolean buildLevels(int source, int sink) {
+    Arrays.fill(level, -1);
+    level[source] = 0;
+    int first = 0;
+    int last = 0;
+    queue[last++] = source;
+    while (first < last) {
+      int node = queue[first++];
+      for (int edge = head[node]; edge != -1; edge = next[edge]) {
+        if (capacity[edge] > 0 && level[to[edge]] < 0) {
+          level[to[edge]] = level[node] + 1;
+          queue[last++] = to[edge];
+        }
+      }
+    }
+    return level[sink] >= 0;
+  }
+
+  int augment(int node, int sink, int limit) {
+    if (node == sink)
+      return limit;
+    for (; currentEdge[node] != -1; currentEdge[node] = next[currentEdge[node]]) {
+      int edge = currentEdge[node];
+      if (capacity[edge] > 0 && level[to[edge]] == level[node] + 1) {
+        int pushed = augment(to[edge], sink, Math.min(limit, capacity[edge]));
+        if (pushed > 0) {
+          capacity[edge] -= pushed;
+          capacity[edge ^ 1] += pushed;
+          return pushed;
+        }
+      }
+    }
+    return 0;
+  }
+}
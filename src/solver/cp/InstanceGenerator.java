@@ -0,0 +1,271 @@
+package solver.cp;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Writes synthetic .sched files in the same format CPInstance parses, so we
+ * can look at how the solver scales past the 28 days / 65 employees in input/.
+ *
+ * With plant=true (the default) a random schedule that satisfies every
+ * constraint of the model is generated first, and the demands are derived
+ * from it. That schedule stays a solution, so the instance is guaranteed to
+ * be feasible. Tightness (0-1) controls how much of the planted schedule the
+ * demands ask for: 1 means the planted counts and hours are the exact minimums.
+ *
+ * With plant=false the demands are only drawn around the average of a
+ * random schedule, so feasibility is not guaranteed (useful for stress tests).
+ */
+public class InstanceGenerator {
+  static final int E_BADARGS = 65;
+
+  final int OFF_SHIFT = 0;
+  final int NIGHT_SHIFT = 1;
+  final int DAY_SHIFT = 2;
+  final int EVENING_SHIFT = 3;
+  final int numShifts = 4;
+
+  // Knobs
+  int numWeeks = 4;
+  int numEmployees = 30;
+  double tightness = 0.8;
+  int minDailyOperation = -1; // derived from the schedule and tightness if not given
+  int maxTotalNightShift = -1; // defaults to about one night in every 3 days
+  boolean plant = true;
+
+  // Fixed by the model (see CPInstance.solve())
+  final int minConsecutiveWork = 4;
+  final int maxDailyWork = 8;
+  final int minWeeklyWork = 20;
+  final int maxWeeklyWork = 40;
+  final int maxConsecutiveNightShift = 1;
+
+  Random rand;
+
+  int numDays;
+  int[][] shifts;
+  int[][] hours;
+  int[][] minDemandDayShift;
+
+  void generate() {
+    numDays = 7 * numWeeks;
+    if (maxTotalNightShift < 0)
+      maxTotalNightShift = Math.max(1, numDays / 3);
+
+    plantSchedule();
+    deriveDemands();
+  }
+
+  /**
+   * A random schedule that satisfies the whole model: a permutation of the 4
+   * shifts over the orientation days, no back-to-back nights, at most
+   * maxTotalNightShift nights, at least 3 work days per week and weekly hours
+   * in 20-40 with every shift 4-8 hours long.
+   */
+  void plantSchedule() {
+    shifts = new int[numEmployees][numDays];
+    hours = new int[numEmployees][numDays];
+
+    for (int employee = 0; employee < numEmployees; employee++) {
+      int[] orientation = new int[] { OFF_SHIFT, NIGHT_SHIFT, DAY_SHIFT, EVENING_SHIFT };
+      for (int i = orientation.length - 1; i > 0; i--) {
+        int j = rand.nextInt(i + 1);
+        int tmp = orientation[i];
+        orientation[i] = orientation[j];
+        orientation[j] = tmp;
+      }
+      int nights = 1;
+      for (int day = 0; day < 4; day++)
+        shifts[employee][day] = orientation[day];
+
+      for (int week = 0; week < numWeeks; week++) {
+        int firstDay = Math.max(7 * week, 4);
+        int workDays = 0;
+        for (int day = 7 * week; day < firstDay; day++)
+          if (shifts[employee][day] != OFF_SHIFT)
+            workDays++;
+
+        for (int day = firstDay; day < 7 * (week + 1); day++) {
+          int daysLeft = 7 * (week + 1) - day;
+          boolean mustWork = workDays + daysLeft <= 3;
+          if (!mustWork && rand.nextDouble() < 0.3) {
+            shifts[employee][day] = OFF_SHIFT;
+            continue;
+          }
+
+          boolean nightAllowed = nights < maxTotalNightShift && shifts[employee][day - 1] != NIGHT_SHIFT;
+          int shift = nightAllowed && rand.nextDouble() < 0.2 ? NIGHT_SHIFT
+              : (rand.nextBoolean() ? DAY_SHIFT : EVENING_SHIFT);
+          if (shift == NIGHT_SHIFT)
+            nights++;
+          shifts[employee][day] = shift;
+          workDays++;
+        }
+
+        plantWeekHours(employee, week);
+      }
+    }
+  }
+
+  // Random 4-8 hours for every work day, nudged until the week is in 20-40
+  void plantWeekHours(int employee, int week) {
+    int total = 0;
+    for (int day = 7 * week; day < 7 * (week + 1); day++) {
+      if (shifts[employee][day] != OFF_SHIFT) {
+        hours[employee][day] = minConsecutiveWork + rand.nextInt(maxDailyWork - minConsecutiveWork + 1);
+        total += hours[employee][day];
+      }
+    }
+
+    while (total < minWeeklyWork || total > maxWeeklyWork) {
+      int day = 7 * week + rand.nextInt(7);
+      if (shifts[employee][day] == OFF_SHIFT)
+        continue;
+      if (total < minWeeklyWork && hours[employee][day] < maxDailyWork) {
+        hours[employee][day]++;
+        total++;
+      } else if (total > maxWeeklyWork && hours[employee][day] > minConsecutiveWork) {
+        hours[employee][day]--;
+        total--;
+      }
+    }
+  }
+
+  void deriveDemands() {
+    minDemandDayShift = new int[numDays][numShifts];
+    int[][] counts = new int[numDays][numShifts];
+    int[] dailyHours = new int[numDays];
+    for (int day = 0; day < numDays; day++) {
+      for (int employee = 0; employee < numEmployees; employee++) {
+        counts[day][shifts[employee][day]]++;
+        dailyHours[day] += hours[employee][day];
+      }
+    }
+
+    int minPlantedHours = Integer.MAX_VALUE;
+    for (int day = 0; day < numDays; day++)
+      minPlantedHours = Math.min(minPlantedHours, dailyHours[day]);
+
+    for (int day = 0; day < numDays; day++) {
+      // The instances we were given never ask for a minimum number of people off
+      for (int shift = NIGHT_SHIFT; shift < numShifts; shift++) {
+        if (plant) {
+          minDemandDayShift[day][shift] = (int) Math.floor(tightness * counts[day][shift]);
+        } else {
+          double average = 0;
+          for (int d = 0; d < numDays; d++)
+            average += counts[d][shift];
+          average /= numDays;
+          minDemandDayShift[day][shift] = (int) Math.round(tightness * average * (0.75 + 0.5 * rand.nextDouble()));
+        }
+      }
+    }
+
+    if (minDailyOperation < 0) {
+      minDailyOperation = (int) Math.floor(tightness * minPlantedHours);
+    } else if (plant && minDailyOperation > minPlantedHours) {
+      System.out.println("Warning: minDailyOperation " + minDailyOperation + " is above what the planted schedule has ("
+          + minPlantedHours + "), the instance may be infeasible");
+    }
+  }
+
+  void write(String fileName) throws IOException {
+    StringBuilder demand = new StringBuilder();
+    for (int day = 0; day < numDays; day++)
+      for (int shift = 0; shift < numShifts; shift++)
+        demand.append(" ").append(minDemandDayShift[day][shift]);
+
+    // Keys (including the "Nigth" typos) have to match what CPInstance parses
+    String contents = "Business_numWeeks: " + numWeeks + "\n"
+        + "Business_numDays: " + numDays + "\n"
+        + "Business_numEmployees: " + numEmployees + "\n"
+        + "Business_numShifts: " + numShifts + "\n"
+        + "Business_numIntervalsInDay: 24\n"
+        + "Business_minDemandDayShift:" + demand + "\n"
+        + "Business_minDailyOperation: " + minDailyOperation + "\n"
+        + "Employee_minConsecutiveWork: " + minConsecutiveWork + "\n"
+        + "Employee_maxDailyWork: " + maxDailyWork + "\n"
+        + "Employee_minWeeklyWork: " + minWeeklyWork + "\n"
+        + "Employee_maxWeeklyWork: " + maxWeeklyWork + "\n"
+        + "Employee_maxConsecutiveNigthShift: " + maxConsecutiveNightShift + "\n"
+        + "Employee_maxTotalNigthShift: " + maxTotalNightShift + "\n";
+
+    File file = new File(fileName);
+    if (file.getParentFile() != null)
+      file.getParentFile().mkdirs();
+    FileWriter writer = new FileWriter(file, false);
+    writer.write(contents);
+    writer.close();
+  }
+
+  static void printUsage() {
+    System.out.println("Usage: java InstanceGenerator [key=value ...]");
+    System.out.println("Keys:");
+    System.out.println("\t numWeeks=4            length of the schedule in weeks");
+    System.out.println("\t numEmployees=30");
+    System.out.println("\t tightness=0.8         0-1, how close demands are to the planted schedule");
+    System.out.println("\t minDailyOperation=N   derived from tightness if not given");
+    System.out.println("\t maxTotalNight=N       defaults to numDays / 3");
+    System.out.println("\t plant=true            plant a hidden solution so the instance is feasible");
+    System.out.println("\t seed=N                random seed (defaults to the clock)");
+    System.out.println("\t out=FILE              defaults to <numDays>_<numEmployees>.sched");
+  }
+
+  public static void main(String[] args) throws IOException {
+    InstanceGenerator generator = new InstanceGenerator();
+    long seed = System.nanoTime();
+    String out = null;
+
+    for (String arg : args) {
+      String[] keyValue = arg.split("=", 2);
+      if (keyValue.length != 2) {
+        printUsage();
+        System.exit(E_BADARGS);
+      }
+      String key = keyValue[0];
+      String value = keyValue[1];
+      if (key.equals("numWeeks")) {
+        generator.numWeeks = Integer.parseInt(value);
+      } else if (key.equals("numEmployees")) {
+        generator.numEmployees = Integer.parseInt(value);
+      } else if (key.equals("tightness")) {
+        generator.tightness = Double.parseDouble(value);
+      } else if (key.equals("minDailyOperation")) {
+        generator.minDailyOperation = Integer.parseInt(value);
+      } else if (key.equals("maxTotalNight")) {
+        generator.maxTotalNightShift = Integer.parseInt(value);
+      } else if (key.equals("plant")) {
+        generator.plant = Boolean.parseBoolean(value);
+      } else if (key.equals("seed")) {
+        seed = Long.parseLong(value);
+      } else if (key.equals("out")) {
+        out = value;
+      } else {
+        System.out.println("Unknown key: " + key);
+        printUsage();
+        System.exit(E_BADARGS);
+      }
+    }
+
+    // The orientation allDiff needs 4 days, which already includes a night
+    if (generator.numWeeks < 1 || generator.numEmployees < 1 || generator.maxTotalNightShift == 0) {
+      System.out.println("Error: need numWeeks >= 1, numEmployees >= 1 and maxTotalNight >= 1");
+      System.exit(E_BADARGS);
+    }
+    // Above 1 the demands could exceed the planted schedule, so it would no
+    // longer prove the instance feasible
+    if (generator.tightness < 0 || generator.tightness > 1) {
+      System.out.println("Error: tightness has to be between 0 and 1");
+      System.exit(E_BADARGS);
+    }
+
+    generator.rand = new Random(seed);
+    generator.generate();
+    if (out == null)
+      out = generator.numDays + "_" + generator.numEmployees + ".sched";
+    generator.write(out);
+    System.out.println("Wrote " + out + " (seed " + seed + (generator.plant ? ", planted solution" : "") + ")");
+  }
+}
@@ -11,10 +11,19 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import java.util.Random;
+
 public class Main {
   public static void main(String[] args) throws FileNotFoundException, IOException, IloException {
     if (args.length == 0) {
-      System.out.println("Usage: java Main <file>");
+      System.out.println("Usage: java Main <file> [options]");
+      System.out.println("Options:");
+      System.out.println("\t --warmStart    give CP a greedy starting point (see GreedyWarmStart)");
+      System.out.println("\t --twoStage     CP only picks shifts, hours are assigned afterwards");
+      System.out.println("\t --seed <n>     seed for the restarts (and the greedy warm start)");
+      System.out.println("\t --search <m>   search method, e.g. FastButBoring (see CPInstance.setSearchMethod)");
+      System.out.println("\t --explain <s>  search for up to s/2 seconds, then spend the rest of the s seconds");
+      System.out.println("\t                explaining which constraints conflict (not with --twoStage)");
       return;
     }
 
@@ -26,9 +35,41 @@ public class Main {
     Timer watch = new Timer();
     watch.start();
     CPInstance instance = new CPInstance(input);
+    for (int i = 1; i < args.length; i++) {
+      if (args[i].equals("--warmStart")) {
+        instance.useWarmStart = true;
+      } else if (args[i].equals("--twoStage")) {
+        instance.twoStage = true;
+      } else if (args[i].equals("--seed") && i + 1 < args.length) {
+        instance.rand = new Random(Long.parseLong(args[++i]));
+      } else if (args[i].equals("--search") && i + 1 < args.length) {
+        instance.searchMethod = args[++i];
+      } else if (args[i].equals("--explain") && i + 1 < args.length) {
+        instance.explain = true;
+        instance.timeBudget = Double.parseDouble(args[++i]);
+        if (instance.timeBudget <= 0) {
+          System.out.println("Error: --explain needs a positive number of seconds");
+          return;
+        }
+      } else {
+        System.out.println("Unknown option: " + args[i]);
+        return;
+      }
+    }
+    if (instance.twoStage && instance.explain) {
+      System.out.println("Error: --explain doesn't work with --twoStage");
+      return;
+    }
+    if (instance.twoStage && !CPInstance.supportsTwoStage(instance.searchMethod)) {
+      System.out.println("Error: --twoStage only works with --search FastButBoring");
+      return;
+    }
     instance.solve();
     watch.stop();
 
+    if (!instance.hasSolution)
+      System.exit(1);
+
     System.out.println("{\"Instance\": \"" + filename +
         "\", \"Time\": " + String.format("%.2f", watch.getTime()) +
         ", \"Result\": " + instance.cp.getInfo(IloCP.IntInfo.NumberOfFails) +
@@ -0,0 +1,67 @@
+package solver.cp;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Which constraint families CPInstance.solve() posts, and with what IloCP
+ * inference level. Everything at DEFAULT is the model as we normally run it.
+ *
+ * IloCP only lets us pick inference levels per kind of constraint (count,
+ * allDiff, and a default level for everything else, which covers the sums),
+ * so some families can only be switched on or off.
+ */
+public class ModelConfig {
+  public enum Setting {
+    OFF, DEFAULT, MEDIUM, EXTENDED
+  }
+
+  public enum Family {
+    // shift == off <=> hours == 0
+    CHANNELING(Setting.OFF, Setting.DEFAULT),
+    // minDemandDayShift counts (CountInferenceLevel; also affects the night cap count)
+    SHIFT_COUNT(Setting.OFF, Setting.DEFAULT, Setting.MEDIUM, Setting.EXTENDED),
+    // range(20, sum, 40) per employee-week
+    WEEKLY_RANGE(Setting.OFF, Setting.DEFAULT),
+    // 2-day ordering of employees
+    SYMMETRY(Setting.OFF, Setting.DEFAULT),
+    // orientation allDiff (AllDiffInferenceLevel)
+    ALL_DIFF(Setting.OFF, Setting.DEFAULT, Setting.MEDIUM, Setting.EXTENDED),
+    // DefaultInferenceLevel, i.e. the sums and everything else
+    SUM(Setting.DEFAULT, Setting.MEDIUM, Setting.EXTENDED);
+
+    public final Setting[] settings;
+
+    Family(Setting... settings) {
+      this.settings = settings;
+    }
+  }
+
+  final Map<Family, Setting> settings = new EnumMap<>(Family.class);
+
+  public ModelConfig() {
+    for (Family family : Family.values())
+      settings.put(family, Setting.DEFAULT);
+  }
+
+  public Setting get(Family family) {
+    return settings.get(family);
+  }
+
+  public void set(Family family, Setting setting) {
+    settings.put(family, setting);
+  }
+
+  public boolean isOn(Family family) {
+    return settings.get(family) != Setting.OFF;
+  }
+
+  // e.g. "CHANNELING=DEFAULT SHIFT_COUNT=EXTENDED ..."
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder();
+    for (Family family : Family.values())
+      result.append(family).append('=').append(settings.get(family)).append(' ');
+    return result.toString().trim();
+  }
+}
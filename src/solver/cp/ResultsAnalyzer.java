@@ -0,0 +1,189 @@
+package solver.cp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares results logs (the JSON lines written by runAll.sh) against each
+ * other so we don't have to eyeball results.log vs results1.log anymore.
+ *
+ * The first log is the baseline; every other log is lined up with it by
+ * instance name. For each one we print per-instance speedups and fail-count
+ * changes, new/fixed timeouts, and an aggregate (geometric mean) speedup.
+ *
+ * The exit status is 1 if any log regresses past the threshold (or times out
+ * on something the baseline solved), so this can gate changes to CPInstance.
+ */
+public class ResultsAnalyzer {
+  static final int E_BADARGS = 65;
+  static final int E_REGRESSION = 1;
+
+  // Anything faster than this is noise as far as the timer is concerned
+  static final double MIN_TIME = 0.01;
+
+  static final Pattern INSTANCE = Pattern.compile("\"Instance\":\\s*\"([^\"]*)\"");
+  static final Pattern TIME = Pattern.compile("\"Time\":\\s*(\"--\"|[0-9.]+)");
+  static final Pattern RESULT = Pattern.compile("\"Result\":\\s*(\"--\"|-?[0-9]+)");
+
+  /**
+   * Everything a log says about one instance. An instance can show up more
+   * than once (e.g. different seeds), in which case the solved runs are
+   * averaged and it only counts as a timeout if none of the runs solved it.
+   */
+  static class InstanceResult {
+    int runs;
+    int solvedRuns;
+    double totalTime;
+    long totalFails;
+
+    boolean timedOut() {
+      return solvedRuns == 0;
+    }
+
+    double time() {
+      return Math.max(MIN_TIME, totalTime / solvedRuns);
+    }
+
+    double fails() {
+      return (double) totalFails / solvedRuns;
+    }
+  }
+
+  static Map<String, InstanceResult> load(String logFile) throws IOException {
+    Map<String, InstanceResult> results = new TreeMap<>();
+    for (String line : Files.readAllLines(Paths.get(logFile))) {
+      Matcher instance = INSTANCE.matcher(line);
+      if (!instance.find())
+        continue;
+
+      InstanceResult result = results.computeIfAbsent(instance.group(1), k -> new InstanceResult());
+      result.runs++;
+
+      Matcher time = TIME.matcher(line);
+      Matcher fails = RESULT.matcher(line);
+      if (time.find() && fails.find() && !time.group(1).equals("\"--\"") && !fails.group(1).equals("\"--\"")) {
+        result.solvedRuns++;
+        result.totalTime += Double.parseDouble(time.group(1));
+        result.totalFails += Long.parseLong(fails.group(1));
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Prints the comparison of one log against the baseline and returns whether
+   * it counts as a regression.
+   */
+  static boolean compare(String baselineName, Map<String, InstanceResult> baseline,
+      String candidateName, Map<String, InstanceResult> candidate, double thresholdPercent) {
+    System.out.println("=== " + candidateName + " vs " + baselineName + " ===");
+    System.out.println(String.format("%-16s %10s %10s %9s %12s %12s  %s",
+        "Instance", "BaseTime", "Time", "Speedup", "BaseFails", "Fails", "Note"));
+
+    TreeSet<String> instances = new TreeSet<>(baseline.keySet());
+    instances.addAll(candidate.keySet());
+
+    double logSpeedupSum = 0;
+    int compared = 0;
+    double baseFailsSum = 0;
+    double failsSum = 0;
+    List<String> newTimeouts = new ArrayList<>();
+    List<String> fixedTimeouts = new ArrayList<>();
+    // e.g. a run log from a runAll.sh that got killed halfway
+    List<String> missing = new ArrayList<>();
+
+    for (String instance : instances) {
+      InstanceResult base = baseline.get(instance);
+      InstanceResult cand = candidate.get(instance);
+      if (cand == null) {
+        missing.add(instance);
+        System.out.println(String.format("%-16s %s", instance, "MISSING (only in " + baselineName + ")"));
+        continue;
+      }
+      if (base == null) {
+        System.out.println(String.format("%-16s %s", instance, "only in " + candidateName));
+        continue;
+      }
+
+      if (base.timedOut() && cand.timedOut()) {
+        System.out.println(String.format("%-16s %10s %10s %9s %12s %12s  %s",
+            instance, "--", "--", "", "--", "--", "timeout in both"));
+      } else if (cand.timedOut()) {
+        newTimeouts.add(instance);
+        System.out.println(String.format("%-16s %10.2f %10s %9s %12.0f %12s  %s",
+            instance, base.time(), "--", "", base.fails(), "--", "NEW TIMEOUT"));
+      } else if (base.timedOut()) {
+        fixedTimeouts.add(instance);
+        System.out.println(String.format("%-16s %10s %10.2f %9s %12s %12.0f  %s",
+            instance, "--", cand.time(), "", "--", cand.fails(), "fixed timeout"));
+      } else {
+        double speedup = base.time() / cand.time();
+        logSpeedupSum += Math.log(speedup);
+        compared++;
+        baseFailsSum += base.fails();
+        failsSum += cand.fails();
+        System.out.println(String.format("%-16s %10.2f %10.2f %8.2fx %12.0f %12.0f  %+.0f fails",
+            instance, base.time(), cand.time(), speedup, base.fails(), cand.fails(), cand.fails() - base.fails()));
+      }
+    }
+
+    double geoMeanSpeedup = compared > 0 ? Math.exp(logSpeedupSum / compared) : 1;
+    System.out.println();
+    System.out.println(String.format("Geometric mean speedup over %d instances solved by both: %.3fx",
+        compared, geoMeanSpeedup));
+    System.out.println(String.format("Total fails on those instances: %.0f -> %.0f", baseFailsSum, failsSum));
+    System.out.println("New timeouts: " + (newTimeouts.isEmpty() ? "none" : String.join(", ", newTimeouts)));
+    System.out.println("Fixed timeouts: " + (fixedTimeouts.isEmpty() ? "none" : String.join(", ", fixedTimeouts)));
+    System.out.println("Missing instances: " + (missing.isEmpty() ? "none" : String.join(", ", missing)));
+
+    // A speedup of 0.9x is a 10% slowdown, etc.
+    boolean tooSlow = geoMeanSpeedup < 1 - thresholdPercent / 100;
+    boolean regressed = tooSlow || !newTimeouts.isEmpty() || !missing.isEmpty();
+    if (tooSlow)
+      System.out.println(String.format("REGRESSION: more than %.1f%% slower than the baseline", thresholdPercent));
+    if (!newTimeouts.isEmpty())
+      System.out.println("REGRESSION: instances that used to be solved now time out");
+    if (!missing.isEmpty())
+      System.out.println("REGRESSION: instances in the baseline have no result in this run");
+    System.out.println();
+    return regressed;
+  }
+
+  public static void main(String[] args) throws IOException {
+    double thresholdPercent = 10;
+    List<String> logs = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (args[i].equals("--threshold") && i + 1 < args.length) {
+        thresholdPercent = Double.parseDouble(args[++i]);
+      } else {
+        logs.add(args[i]);
+      }
+    }
+
+    if (logs.size() < 2) {
+      System.out.println("Usage: java ResultsAnalyzer [--threshold <percent>] <baseline.log> <run.log> [<run.log> ...]");
+      System.out.println("\t Compares every run log against the baseline log, instance by instance.");
+      System.out.println("\t Exits with 1 if a run is more than <percent> slower (geometric mean, default 10)");
+      System.out.println("\t or times out on an instance the baseline solved, or has no result for an instance");
+      System.out.println("\t in the baseline.");
+      System.exit(E_BADARGS);
+    }
+
+    Map<String, InstanceResult> baseline = load(logs.get(0));
+    boolean regressed = false;
+    for (int i = 1; i < logs.size(); i++) {
+      regressed |= compare(logs.get(0), baseline, logs.get(i), load(logs.get(i)), thresholdPercent);
+    }
+
+    if (regressed)
+      System.exit(E_REGRESSION);
+  }
+}
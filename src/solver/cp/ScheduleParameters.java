@@ -0,0 +1,82 @@
+package solver.cp;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * The parameters of a .sched instance, as parsed from the file.
+ *
+ * Kept separate from CPInstance (and free of any ILOG imports) so tools that
+ * don't need the CP Optimizer, like the native engine in solver.cp.engine,
+ * can read instances without the proprietary jar on the classpath.
+ */
+public class ScheduleParameters {
+  // BUSINESS parameters
+  public int numWeeks;
+  public int numDays;
+  public int numEmployees;
+  public int numShifts;
+  public int numIntervalsInDay;
+  public int[][] minDemandDayShift;
+  public int minDailyOperation;
+
+  // EMPLOYEE parameters
+  public int minConsecutiveWork;
+  public int maxDailyWork;
+  public int minWeeklyWork;
+  public int maxWeeklyWork;
+  public int maxConsecutiveNightShift;
+  public int maxTotalNightShift;
+
+  // The off shift is denoted by 0 while work shifts, night, day, and evening are
+  // denoted by 1, 2, and 3 respectively.
+  public final int OFF_SHIFT = 0;
+  public final int NIGHT_SHIFT = 1;
+  public final int DAY_SHIFT = 2;
+  public final int EVENING_SHIFT = 3;
+
+  public ScheduleParameters(String fileName) {
+    try {
+      Scanner read = new Scanner(new File(fileName));
+
+      while (read.hasNextLine()) {
+        String line = read.nextLine();
+        String[] values = line.split(" ");
+        if (values[0].equals("Business_numWeeks:")) {
+          numWeeks = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Business_numDays:")) {
+          numDays = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Business_numEmployees:")) {
+          numEmployees = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Business_numShifts:")) {
+          numShifts = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Business_numIntervalsInDay:")) {
+          numIntervalsInDay = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Business_minDemandDayShift:")) {
+          int index = 1;
+          minDemandDayShift = new int[numDays][numShifts];
+          for (int d = 0; d < numDays; d++)
+            for (int s = 0; s < numShifts; s++)
+              minDemandDayShift[d][s] = Integer.parseInt(values[index++]);
+        } else if (values[0].equals("Business_minDailyOperation:")) {
+          minDailyOperation = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Employee_minConsecutiveWork:")) {
+          minConsecutiveWork = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Employee_maxDailyWork:")) {
+          maxDailyWork = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Employee_minWeeklyWork:")) {
+          minWeeklyWork = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Employee_maxWeeklyWork:")) {
+          maxWeeklyWork = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Employee_maxConsecutiveNigthShift:")) {
+          maxConsecutiveNightShift = Integer.parseInt(values[1]);
+        } else if (values[0].equals("Employee_maxTotalNigthShift:")) {
+          maxTotalNightShift = Integer.parseInt(values[1]);
+        }
+      }
+    } catch (FileNotFoundException e) {
+      System.out.println("Error: file not found " + fileName);
+    }
+  }
+}
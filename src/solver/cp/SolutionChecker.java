@@ -0,0 +1,82 @@
+package solver.cp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks a schedule against the full set of constraints of the problem,
+ * independently of how it was produced. Useful whenever the model that found
+ * the schedule was missing something (e.g. with constraint families switched
+ * off in an ablation run).
+ *
+ * The symmetry breaks are not checked: they only prune equivalent solutions,
+ * they aren't part of the problem.
+ */
+public class SolutionChecker {
+
+  /**
+   * Returns a description of every violated constraint (empty if the
+   * schedule is valid). shifts[e][d] is a shift code, hours[e][d] the hours
+   * worked.
+   */
+  public static List<String> check(ScheduleParameters params, int[][] shifts, int[][] hours) {
+    List<String> violations = new ArrayList<>();
+
+    for (int employee = 0; employee < params.numEmployees; employee++) {
+      for (int day = 0; day < params.numDays; day++) {
+        int shift = shifts[employee][day];
+        int worked = hours[employee][day];
+        if (shift == params.OFF_SHIFT && worked != 0)
+          violations.add(String.format("employee %d is off on day %d but works %d hours", employee, day, worked));
+        if (shift != params.OFF_SHIFT && (worked < params.minConsecutiveWork || worked > params.maxDailyWork))
+          violations.add(String.format("employee %d works %d hours on day %d", employee, worked, day));
+      }
+    }
+
+    for (int day = 0; day < params.numDays; day++) {
+      int[] counts = new int[params.numShifts];
+      int totalHours = 0;
+      for (int employee = 0; employee < params.numEmployees; employee++) {
+        counts[shifts[employee][day]]++;
+        totalHours += hours[employee][day];
+      }
+      for (int shift = 0; shift < params.numShifts; shift++)
+        if (counts[shift] < params.minDemandDayShift[day][shift])
+          violations.add(String.format("day %d shift %d has %d employees, needs %d", day, shift, counts[shift],
+              params.minDemandDayShift[day][shift]));
+      if (totalHours < params.minDailyOperation)
+        violations.add(String.format("day %d has %d hours, needs %d", day, totalHours, params.minDailyOperation));
+    }
+
+    for (int employee = 0; employee < params.numEmployees; employee++) {
+      boolean[] seen = new boolean[params.numShifts];
+      for (int day = 0; day < 4; day++) {
+        if (seen[shifts[employee][day]])
+          violations.add(String.format("employee %d repeats shift %d during orientation", employee,
+              shifts[employee][day]));
+        seen[shifts[employee][day]] = true;
+      }
+
+      for (int week = 0; week < params.numWeeks; week++) {
+        int weekHours = 0;
+        for (int day = 7 * week; day < 7 * (week + 1); day++)
+          weekHours += hours[employee][day];
+        if (weekHours < params.minWeeklyWork || weekHours > params.maxWeeklyWork)
+          violations.add(String.format("employee %d works %d hours in week %d", employee, weekHours, week));
+      }
+
+      int nights = 0;
+      for (int day = 0; day < params.numDays; day++) {
+        if (shifts[employee][day] != params.NIGHT_SHIFT)
+          continue;
+        nights++;
+        if (day > 0 && shifts[employee][day - 1] == params.NIGHT_SHIFT)
+          violations.add(String.format("employee %d works nights on days %d and %d", employee, day - 1, day));
+      }
+      if (nights > params.maxTotalNightShift)
+        violations.add(String.format("employee %d works %d night shifts", employee, nights));
+    }
+
+    return violations;
+  }
+}
@@ -0,0 +1,148 @@
+package solver.cp;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Live counters for a running CPInstance.solve(), exposed over JMX so a long
+ * run can be inspected with jconsole (or jcmd) while it's still going.
+ *
+ * Only the restart loop writes to these, so plain volatile fields are enough:
+ * readers (the JMX threads) always see the latest value and the solver never
+ * has to take a lock.
+ */
+public class SolveStats implements SolveStatsMBean {
+  private final String instance;
+  private final long startTime = System.nanoTime();
+
+  private volatile String searchMethod = "";
+  private volatile long restartsCompleted;
+  private volatile long rejectedShiftAssignments;
+  private volatile int currentFailLimit;
+  private volatile long cumulativeFails;
+  private volatile long cumulativeBranches;
+  private volatile int currentSeed;
+
+  private ObjectName objectName;
+
+  public SolveStats(String instance) {
+    this.instance = instance;
+  }
+
+  /**
+   * Registers a fresh SolveStats for the given instance with the platform
+   * MBean server. If something with the same name is still registered (e.g. a
+   * previous solve in the same JVM), it gets replaced.
+   * Failing to register is not fatal: the returned object still works, it just
+   * won't be visible from outside.
+   */
+  public static SolveStats register(String instance) {
+    SolveStats stats = new SolveStats(instance);
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName("solver.cp:type=SolveStats,instance=" + ObjectName.quote(instance));
+      if (server.isRegistered(name))
+        server.unregisterMBean(name);
+      server.registerMBean(stats, name);
+      stats.objectName = name;
+    } catch (JMException e) {
+      System.out.println("Error: could not register solve stats MBean " + e);
+    }
+    return stats;
+  }
+
+  public void unregister() {
+    if (objectName == null)
+      return;
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      System.out.println("Error: could not unregister solve stats MBean " + e);
+    }
+    objectName = null;
+  }
+
+  void setSearchMethod(String searchMethod) {
+    this.searchMethod = searchMethod;
+  }
+
+  void setFailLimit(int failLimit) {
+    this.currentFailLimit = failLimit;
+  }
+
+  void setSeed(int seed) {
+    this.currentSeed = seed;
+  }
+
+  /**
+   * Called after every cp.solve() with the fails and branches of that run.
+   * Single writer, so the read-modify-write on the volatiles is safe.
+   */
+  void recordRun(long fails, long branches) {
+    cumulativeFails += fails;
+    cumulativeBranches += branches;
+  }
+
+  void recordRestart() {
+    restartsCompleted++;
+  }
+
+  // Two-stage mode: CP found shifts that HoursAssigner couldn't give hours to
+  void recordRejectedShiftAssignment() {
+    rejectedShiftAssignments++;
+  }
+
+  @Override
+  public String getInstance() {
+    return instance;
+  }
+
+  @Override
+  public String getSearchMethod() {
+    return searchMethod;
+  }
+
+  @Override
+  public long getRestartsCompleted() {
+    return restartsCompleted;
+  }
+
+  @Override
+  public long getRejectedShiftAssignments() {
+    return rejectedShiftAssignments;
+  }
+
+  @Override
+  public double getRestartsPerSecond() {
+    double elapsed = getElapsedSeconds();
+    return elapsed > 0 ? restartsCompleted / elapsed : 0;
+  }
+
+  @Override
+  public int getCurrentFailLimit() {
+    return currentFailLimit;
+  }
+
+  @Override
+  public long getCumulativeFails() {
+    return cumulativeFails;
+  }
+
+  @Override
+  public long getCumulativeBranches() {
+    return cumulativeBranches;
+  }
+
+  @Override
+  public int getCurrentSeed() {
+    return currentSeed;
+  }
+
+  @Override
+  public double getElapsedSeconds() {
+    return (System.nanoTime() - startTime) / 1000000000.0;
+  }
+}
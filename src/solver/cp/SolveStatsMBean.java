@@ -0,0 +1,27 @@
+package solver.cp;
+
+/**
+ * Management interface for {@link SolveStats}; the getters below become the
+ * read-only attributes jconsole shows under solver.cp:type=SolveStats.
+ */
+public interface SolveStatsMBean {
+  String getInstance();
+
+  String getSearchMethod();
+
+  long getRestartsCompleted();
+
+  long getRejectedShiftAssignments();
+
+  double getRestartsPerSecond();
+
+  int getCurrentFailLimit();
+
+  long getCumulativeFails();
+
+  long getCumulativeBranches();
+
+  int getCurrentSeed();
+
+  double getElapsedSeconds();
+}
@@ -0,0 +1,462 @@
+package solver.cp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a sweep (instances x seeds x search methods) with several worker
+ * processes on one machine, instead of one run after another like runAll.sh.
+ *
+ * The sweep lives in a spool directory:
+ * - pending/  one .item file (a Properties file) per run still to do
+ * - claimed/  items a worker is running, renamed to <item>.<worker pid>
+ * - done/     finished items, with their result line added
+ * - workers/  one <pid>.lock per worker, locked for as long as it runs
+ * - results.log  every result as a JSON line (same format as runAll.sh, plus
+ *                Seed and Strategy), so ResultsAnalyzer can read it
+ *
+ * Workers claim an item by renaming it from pending/ to claimed/, which is
+ * atomic, so no two workers ever get the same item. Each run happens in its
+ * own JVM (just like runAll.sh), so a solver crash or timeout only loses that
+ * run. That JVM exits as soon as its worker does, and if a worker dies, its
+ * claimed item is put back into pending/ by whichever worker notices that the
+ * owner's lock is free. (The OS drops the lock when the process dies, so this
+ * also works after a reboot, when the pid may belong to something else.)
+ * Re-running init or run on an existing spool only adds what's missing, so a
+ * sweep can be resumed without redoing finished items.
+ */
+public class SweepCoordinator {
+  static final int E_BADARGS = 65;
+
+  final Path spool;
+  final Path pending;
+  final Path claimed;
+  final Path done;
+  final Path output;
+  final Path workers;
+  final Path results;
+
+  // Held by work() for the life of the worker
+  FileLock workerLock;
+
+  SweepCoordinator(String spoolDir) throws IOException {
+    spool = Paths.get(spoolDir);
+    pending = spool.resolve("pending");
+    claimed = spool.resolve("claimed");
+    done = spool.resolve("done");
+    output = spool.resolve("output");
+    workers = spool.resolve("workers");
+    results = spool.resolve("results.log");
+    Files.createDirectories(pending);
+    Files.createDirectories(claimed);
+    Files.createDirectories(done);
+    Files.createDirectories(output);
+    Files.createDirectories(workers);
+  }
+
+  /**
+   * Adds one item per (instance, seed, strategy) that isn't already pending,
+   * claimed or done. Returns how many were added.
+   */
+  int init(String inputFolder, int timeLimit, int numSeeds, String[] strategies, String engine)
+      throws IOException {
+    File[] files = new File(inputFolder).listFiles((dir, name) -> name.endsWith(".sched"));
+    if (files == null)
+      throw new IOException("No such input folder " + inputFolder);
+    Arrays.sort(files);
+
+    int added = 0;
+    for (File file : files) {
+      for (int seed = 1; seed <= numSeeds; seed++) {
+        for (String strategy : strategies) {
+          String id = file.getName().replace(".sched", "") + "_seed" + seed + "_" + strategy + ".item";
+          if (exists(id))
+            continue;
+
+          Properties item = new Properties();
+          item.setProperty("instance", file.getPath());
+          item.setProperty("seed", Integer.toString(seed));
+          item.setProperty("strategy", strategy);
+          item.setProperty("timeLimit", Integer.toString(timeLimit));
+          item.setProperty("engine", engine);
+
+          // Write under a temporary name first so workers never see half an item
+          Path tmp = spool.resolve(id + ".tmp");
+          FileOutputStream out = new FileOutputStream(tmp.toFile());
+          item.store(out, null);
+          out.close();
+          Files.move(tmp, pending.resolve(id), StandardCopyOption.ATOMIC_MOVE);
+          added++;
+        }
+      }
+    }
+    return added;
+  }
+
+  boolean exists(String id) throws IOException {
+    if (Files.exists(pending.resolve(id)) || Files.exists(done.resolve(id)))
+      return true;
+    for (String name : list(claimed))
+      if (name.startsWith(id + "."))
+        return true;
+    return false;
+  }
+
+  static List<String> list(Path dir) throws IOException {
+    List<String> names = new ArrayList<>();
+    File[] files = dir.toFile().listFiles();
+    if (files != null)
+      for (File file : files)
+        names.add(file.getName());
+    names.sort(null);
+    return names;
+  }
+
+  /**
+   * Worker loop: claim, run, record, until there's nothing left (including
+   * nothing left behind by dead workers).
+   */
+  void work() throws IOException, InterruptedException {
+    long pid = ProcessHandle.current().pid();
+    if (workerLock == null) {
+      FileChannel channel = FileChannel.open(workers.resolve(pid + ".lock"), StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE);
+      workerLock = channel.lock();
+    }
+    while (true) {
+      String id = claim(pid);
+      if (id == null) {
+        if (recoverStaleClaims() == 0)
+          return;
+        continue;
+      }
+
+      Path claimedItem = claimed.resolve(id + "." + pid);
+      Properties item = new Properties();
+      FileInputStream in = new FileInputStream(claimedItem.toFile());
+      item.load(in);
+      in.close();
+
+      String result = runItem(id, item);
+
+      // Write the result into the item (through a temporary file, so a crash
+      // can't leave a truncated item behind), then move it to done/: once
+      // it's there it will never be run again
+      item.setProperty("result", result);
+      Path tmp = spool.resolve(id + "." + pid + ".tmp");
+      FileOutputStream out = new FileOutputStream(tmp.toFile());
+      item.store(out, null);
+      out.close();
+      Files.move(tmp, claimedItem, StandardCopyOption.ATOMIC_MOVE);
+      Files.move(claimedItem, done.resolve(id), StandardCopyOption.ATOMIC_MOVE);
+      appendResult(result);
+    }
+  }
+
+  // Returns the id of the claimed item, or null if pending/ is empty
+  String claim(long pid) throws IOException {
+    for (String id : list(pending)) {
+      try {
+        Files.move(pending.resolve(id), claimed.resolve(id + "." + pid), StandardCopyOption.ATOMIC_MOVE);
+        return id;
+      } catch (NoSuchFileException e) {
+        // Another worker got there first
+      } catch (AtomicMoveNotSupportedException e) {
+        throw new IOException("The spool directory needs a file system with atomic renames", e);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * A worker is alive while it holds the lock on its workers/ file. Claims
+   * without a lock file (e.g. from an older spool) count as dead. We only
+   * look for stale claims between items, so a claim with our own pid is a
+   * leftover from an earlier process that had the same pid.
+   */
+  boolean isWorkerAlive(long owner) throws IOException {
+    if (owner == ProcessHandle.current().pid())
+      return false;
+    Path lockFile = workers.resolve(owner + ".lock");
+    if (!Files.exists(lockFile))
+      return false;
+    FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE);
+    try {
+      FileLock lock = channel.tryLock();
+      if (lock == null)
+        return true;
+      lock.release();
+      return false;
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Puts items claimed by workers that are no longer running back into
+   * pending/. Returns how many items are still pending or claimed by live
+   * workers.
+   */
+  int recoverStaleClaims() throws IOException {
+    int remaining = 0;
+    for (String name : list(claimed)) {
+      int dot = name.lastIndexOf('.');
+      long owner = Long.parseLong(name.substring(dot + 1));
+      if (!isWorkerAlive(owner)) {
+        try {
+          Files.move(claimed.resolve(name), pending.resolve(name.substring(0, dot)), StandardCopyOption.ATOMIC_MOVE);
+          System.out.println("Recovered " + name.substring(0, dot) + " from dead worker " + owner);
+        } catch (NoSuchFileException e) {
+          // Someone else recovered it (or the owner just finished)
+          continue;
+        }
+      }
+      remaining++;
+    }
+    if (remaining > 0 && list(pending).isEmpty()) {
+      // Only live workers' items are left: wait for them in case one dies
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return remaining + list(pending).size();
+  }
+
+  /**
+   * Runs one item in a fresh JVM under the same classpath (and environment,
+   * so the ILOG license and libraries carry over), and returns its result line.
+   */
+  String runItem(String id, Properties item) throws IOException, InterruptedException {
+    String instance = item.getProperty("instance");
+    String seed = item.getProperty("seed");
+    String strategy = item.getProperty("strategy");
+    int timeLimit = Integer.parseInt(item.getProperty("timeLimit"));
+
+    List<String> command = javaCommand();
+    command.add("solver.cp.SweepCoordinator");
+    command.add("child");
+    if (item.getProperty("engine").equals("native")) {
+      command.add("solver.cp.engine.NativeMain");
+      command.add(instance);
+      command.add("--seed");
+      command.add(seed);
+    } else {
+      command.add("solver.cp.Main");
+      command.add(instance);
+      command.add("--seed");
+      command.add(seed);
+      command.add("--search");
+      command.add(strategy);
+    }
+
+    System.out.println("Running " + id);
+    // One file per attempt, so a retried item never shares its output
+    Path log = output.resolve(id.replace(".item", "." + ProcessHandle.current().pid() + ".out"));
+    Process process = new ProcessBuilder(command)
+        .redirectErrorStream(true)
+        .redirectOutput(log.toFile())
+        .start();
+    boolean finished = process.waitFor(timeLimit, TimeUnit.SECONDS);
+    if (!finished) {
+      process.destroyForcibly();
+      process.waitFor();
+    }
+
+    String lastLine = null;
+    if (finished && process.exitValue() == 0) {
+      List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+      if (!lines.isEmpty() && lines.get(lines.size() - 1).startsWith("{"))
+        lastLine = lines.get(lines.size() - 1);
+    }
+
+    String tags = "\"Seed\": " + seed + ", \"Strategy\": \"" + strategy + "\", ";
+    if (lastLine == null) {
+      // Same as runAll.sh: a failed run is recorded with --'s
+      return "{\"Instance\": \"" + new File(instance).getName() + "\", " + tags + "\"Time\": \"--\", \"Result\": \"--\"}";
+    }
+    return "{" + tags + lastLine.substring(1);
+  }
+
+  // Several workers append to the same file, so take a lock for each line
+  void appendResult(String line) throws IOException {
+    FileChannel channel = FileChannel.open(results, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.APPEND);
+    FileLock lock = channel.lock();
+    try {
+      channel.write(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)));
+    } finally {
+      lock.release();
+      channel.close();
+    }
+  }
+
+  /**
+   * Rewrites results.log from done/ (e.g. if a worker died between finishing
+   * an item and appending its line).
+   */
+  void collect() throws IOException {
+    StringBuilder lines = new StringBuilder();
+    for (String id : list(done)) {
+      Properties item = new Properties();
+      FileInputStream in = new FileInputStream(done.resolve(id).toFile());
+      item.load(in);
+      in.close();
+      lines.append(item.getProperty("result")).append("\n");
+    }
+    Files.write(results, lines.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  void printStatus() throws IOException {
+    System.out.println("Pending: " + list(pending).size() + ", claimed: " + list(claimed).size() + ", done: "
+        + list(done).size());
+  }
+
+  /**
+   * Starts numWorkers worker processes on this spool and waits for them.
+   */
+  void runWorkers(String spoolDir, int numWorkers) throws IOException, InterruptedException {
+    List<Process> workers = new ArrayList<>();
+    for (int i = 0; i < numWorkers; i++) {
+      List<String> command = javaCommand();
+      command.add("solver.cp.SweepCoordinator");
+      command.add("work");
+      command.add(spoolDir);
+      workers.add(new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .redirectOutput(spool.resolve("worker" + i + ".out").toFile())
+          .start());
+    }
+
+    Timer watch = new Timer();
+    watch.start();
+    for (Process worker : workers)
+      worker.waitFor();
+    watch.stop();
+
+    // A worker could have died on the very last item
+    recoverStaleClaims();
+    if (!list(pending).isEmpty()) {
+      System.out.println("Items left behind by crashed workers, running them here");
+      work();
+    }
+    printStatus();
+    System.out.println(String.format("Took %.2f seconds with %d workers", watch.getTime(), numWorkers));
+  }
+
+  // A java command line with this JVM's classpath and library path
+  static List<String> javaCommand() {
+    List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    String libraryPath = System.getProperty("java.library.path");
+    if (libraryPath != null)
+      command.add("-Djava.library.path=" + libraryPath);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    return command;
+  }
+
+  /**
+   * Runs mainClass in this JVM, but halts as soon as the parent process (the
+   * worker) goes away. Neither Main nor NativeMain has a time limit of its
+   * own, so without this a killed worker would leave its solver running.
+   */
+  static void runChild(String mainClass, String[] args) throws IOException {
+    ProcessHandle parent = ProcessHandle.current().parent()
+        .orElseThrow(() -> new IOException("Solver run has no parent worker"));
+    parent.onExit().thenRun(() -> Runtime.getRuntime().halt(1));
+
+    try {
+      Class.forName(mainClass).getMethod("main", String[].class).invoke(null, (Object) args);
+    } catch (InvocationTargetException e) {
+      System.out.println("Error: " + e.getCause());
+      System.exit(1);
+    } catch (ReflectiveOperationException e) {
+      throw new IOException("Can't run " + mainClass, e);
+    }
+  }
+
+  static void printUsage() {
+    System.out.println("Usage: java SweepCoordinator <command> <spoolDir> ...");
+    System.out.println("Commands:");
+    System.out.println("\t init <spoolDir> <inputFolder/> <timeLimit> [--seeds <n>] [--strategies <a,b,...>] [--engine cp|native]");
+    System.out.println("\t     adds the sweep's items to the spool (skipping ones it already has)");
+    System.out.println("\t run <spoolDir> <numWorkers>     starts workers and waits for the sweep to finish");
+    System.out.println("\t work <spoolDir>                 runs a single worker in this process");
+    System.out.println("\t status <spoolDir>");
+    System.out.println("\t collect <spoolDir>              rebuilds results.log from the finished items");
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length >= 2 && args[0].equals("child")) {
+      runChild(args[1], Arrays.copyOfRange(args, 2, args.length));
+      return;
+    }
+    if (args.length < 2) {
+      printUsage();
+      System.exit(E_BADARGS);
+    }
+
+    String command = args[0];
+    SweepCoordinator coordinator = new SweepCoordinator(args[1]);
+    if (command.equals("init") && args.length >= 4) {
+      int numSeeds = 1;
+      String[] strategies = new String[] { "FastButBoring" };
+      boolean strategiesGiven = false;
+      String engine = "cp";
+      for (int i = 4; i < args.length; i++) {
+        if (args[i].equals("--seeds") && i + 1 < args.length) {
+          numSeeds = Integer.parseInt(args[++i]);
+        } else if (args[i].equals("--strategies") && i + 1 < args.length) {
+          strategies = args[++i].split(",");
+          strategiesGiven = true;
+        } else if (args[i].equals("--engine") && i + 1 < args.length) {
+          engine = args[++i];
+        } else {
+          printUsage();
+          System.exit(E_BADARGS);
+        }
+      }
+      // NativeMain only has its FastButBoring-like search, so more strategies
+      // would just be the same run several times
+      if (engine.equals("native") && strategiesGiven) {
+        System.out.println("Error: --strategies only applies to --engine cp");
+        System.exit(E_BADARGS);
+      }
+      int added = coordinator.init(args[2], Integer.parseInt(args[3]), numSeeds, strategies, engine);
+      System.out.println("Added " + added + " items");
+      coordinator.printStatus();
+    } else if (command.equals("run") && args.length == 3) {
+      coordinator.runWorkers(args[1], Integer.parseInt(args[2]));
+    } else if (command.equals("work")) {
+      coordinator.work();
+    } else if (command.equals("status")) {
+      coordinator.printStatus();
+    } else if (command.equals("collect")) {
+      coordinator.collect();
+    } else {
+      printUsage();
+      System.exit(E_BADARGS);
+    }
+  }
+}
@@ -0,0 +1,203 @@
+package solver.cp.engine;
+
+import java.util.SplittableRandom;
+
+/**
+ * Depth-first search with restarts over a ScheduleModel, mirroring what
+ * CPInstance does with IloCP: the "FastButBoring" variable/value ordering,
+ * a fail limit per run that grows by 8% every 100 * numWeeks runs, and a new
+ * random seed for every restart.
+ *
+ * The search is iterative with preallocated stacks, so once the trail has
+ * grown to size nothing is allocated per node.
+ */
+final class DfsSearch {
+  static final int SOLVED = 0;
+  static final int FAIL_LIMIT = 1;
+  static final int EXHAUSTED = 2;
+
+  final ScheduleModel model;
+  final DomainStore store;
+  SplittableRandom rand;
+
+  // Decision stack: one entry per open choice point
+  final int[] levelMark;
+  final int[] levelVar;
+  final int[] levelBit;
+  final boolean[] levelRight;
+  int depth;
+
+  // Fails of the last run (like IloCP.IntInfo.NumberOfFails) and overall
+  long fails;
+  long totalFails;
+  int restarts;
+
+  DfsSearch(ScheduleModel model, long seed) {
+    this.model = model;
+    this.store = model.store;
+    this.rand = new SplittableRandom(seed);
+    int numVars = model.numVars();
+    levelMark = new int[numVars + 1];
+    levelVar = new int[numVars + 1];
+    levelBit = new int[numVars + 1];
+    levelRight = new boolean[numVars + 1];
+  }
+
+  /**
+   * Runs the restart loop until a solution is found (true) or the search
+   * space turns out to be empty (false). On success the domains in the store
+   * are all fixed and describe the solution.
+   */
+  boolean solve() {
+    if (!model.propagateAll())
+      return false;
+    int rootMark = store.mark();
+
+    double failLimit = 45 * Math.round(2 * model.numEmployees);
+    double failLimitMultiplier = 1.08;
+    int limitIncreaseThreshold = 100 * model.params.numWeeks;
+
+    int result = run((long) failLimit);
+    while (result == FAIL_LIMIT) {
+      store.undoTo(rootMark);
+      if (restarts % limitIncreaseThreshold == 0) {
+        failLimit *= failLimitMultiplier;
+        System.out.println("Restarting with restart limit: " +
+            (int) failLimit + " for " + limitIncreaseThreshold + " runs.");
+      }
+      rand = new SplittableRandom(rand.nextLong());
+      result = run((long) failLimit);
+      restarts++;
+    }
+    return result == SOLVED;
+  }
+
+  /**
+   * One DFS run with binary branching (var = value, then var != value) that
+   * gives up after failLimit fails.
+   */
+  int run(long failLimit) {
+    fails = 0;
+    depth = 0;
+    while (true) {
+      int var = selectVariable();
+      if (var < 0)
+        return SOLVED;
+      int bit = selectValue(var);
+
+      levelMark[depth] = store.mark();
+      levelVar[depth] = var;
+      levelBit[depth] = bit;
+      levelRight[depth] = false;
+      depth++;
+      boolean ok = store.restrict(var, bit) && model.propagate();
+
+      while (!ok) {
+        fails++;
+        totalFails++;
+        if (fails > failLimit)
+          return FAIL_LIMIT;
+
+        // Pop levels whose both branches have been tried
+        do {
+          if (depth == 0)
+            return EXHAUSTED;
+          depth--;
+          store.undoTo(levelMark[depth]);
+        } while (levelRight[depth]);
+
+        levelRight[depth] = true;
+        depth++;
+        ok = store.remove(levelVar[depth - 1], levelBit[depth - 1]) && model.propagate();
+      }
+    }
+  }
+
+  /**
+   * Shift codes first, then hours. Within each: smallest domain, then
+   * largest domain max, then random (reservoir sampling over the ties).
+   */
+  int selectVariable() {
+    int[] dom = store.dom;
+    int numShiftVars = model.numEmployees * model.numDays;
+    int best = selectVariable(dom, 0, numShiftVars);
+    if (best < 0)
+      best = selectVariable(dom, numShiftVars, dom.length);
+    return best;
+  }
+
+  int selectVariable(int[] dom, int from, int to) {
+    int best = -1;
+    int bestSize = Integer.MAX_VALUE;
+    int bestMax = -1;
+    int ties = 0;
+    for (int var = from; var < to; var++) {
+      int size = Integer.bitCount(dom[var]);
+      if (size == 1)
+        continue;
+      int max = ScheduleModel.maxBit(dom[var]);
+      if (size < bestSize || (size == bestSize && max > bestMax)) {
+        best = var;
+        bestSize = size;
+        bestMax = max;
+        ties = 1;
+      } else if (size == bestSize && max == bestMax && rand.nextInt(++ties) == 0) {
+        best = var;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * We don't have IloCP's impacts to go on, so shift codes go to whichever
+   * shift is furthest from its demand that day (ties broken randomly). Hours
+   * take the longest possible duration, like FastButBoring.
+   */
+  int selectValue(int var) {
+    int dom = store.dom[var];
+    if (!model.isShiftVar(var))
+      return Integer.highestOneBit(dom);
+
+    int day = var % model.numDays;
+    int best = 0;
+    int bestShortfall = Integer.MIN_VALUE;
+    int ties = 0;
+    for (int rest = dom; rest != 0; rest &= rest - 1) {
+      int bit = Integer.lowestOneBit(rest);
+      int shortfall = model.shortfall(day, Integer.numberOfTrailingZeros(bit));
+      if (shortfall > bestShortfall) {
+        best = bit;
+        bestShortfall = shortfall;
+        ties = 1;
+      } else if (shortfall == bestShortfall && rand.nextInt(++ties) == 0) {
+        best = bit;
+      }
+    }
+    return best;
+  }
+
+  int value(int var) {
+    return ScheduleModel.minBit(store.dom[var]);
+  }
+
+  /**
+   * The solution in the same "start end" format Main prints for CPInstance.
+   */
+  String getEmployeeHours() {
+    StringBuilder hours = new StringBuilder();
+    for (int employee = 0; employee < model.numEmployees; employee++) {
+      for (int day = 0; day < model.numDays; day++) {
+        int shift = value(model.shiftVar(employee, day));
+        int duration = ScheduleModel.DURATIONS[value(model.hoursVar(employee, day))];
+        if (shift == model.params.OFF_SHIFT) {
+          hours.append("-1 -1 ");
+        } else {
+          // Night starts at 0, day at 8, evening at 16
+          int start = 8 * (shift - 1);
+          hours.append(start).append(' ').append(start + duration).append(' ');
+        }
+      }
+    }
+    return hours.toString().trim();
+  }
+}
@@ -0,0 +1,110 @@
+package solver.cp.engine;
+
+import java.util.Arrays;
+
+/**
+ * Bitset domains for every variable of the model, the trail that undoes
+ * domain changes on backtrack, and the queue of constraints to propagate.
+ *
+ * Every domain is a plain int (bit i set = i-th value still possible), so a
+ * change is a single store plus two trail entries and nothing gets allocated
+ * while searching (the trail only grows, and only until it's big enough).
+ */
+final class DomainStore {
+  final int[] dom;
+
+  // Trail: (variable, old domain) pairs, undone in reverse order
+  int[] trailVar = new int[1 << 12];
+  int[] trailDom = new int[1 << 12];
+  int trailSize;
+
+  // watchers[v] = the constraints to wake up when v's domain changes
+  int[][] watchers;
+
+  // Circular queue of constraints waiting to be propagated
+  int[] queue;
+  boolean[] queued;
+  int queueHead;
+  int queueSize;
+
+  DomainStore(int numVars) {
+    dom = new int[numVars];
+  }
+
+  void setWatchers(int[][] watchers, int numConstraints) {
+    this.watchers = watchers;
+    queue = new int[numConstraints];
+    queued = new boolean[numConstraints];
+  }
+
+  int mark() {
+    return trailSize;
+  }
+
+  void undoTo(int mark) {
+    while (trailSize > mark) {
+      trailSize--;
+      dom[trailVar[trailSize]] = trailDom[trailSize];
+    }
+  }
+
+  /**
+   * Sets the domain of var to newDom. Returns false (and changes nothing) if
+   * that would leave the variable without values.
+   */
+  boolean set(int var, int newDom) {
+    int old = dom[var];
+    if (newDom == old)
+      return true;
+    if (newDom == 0)
+      return false;
+
+    if (trailSize == trailVar.length) {
+      trailVar = Arrays.copyOf(trailVar, 2 * trailSize);
+      trailDom = Arrays.copyOf(trailDom, 2 * trailSize);
+    }
+    trailVar[trailSize] = var;
+    trailDom[trailSize] = old;
+    trailSize++;
+    dom[var] = newDom;
+
+    int[] wake = watchers[var];
+    for (int i = 0; i < wake.length; i++)
+      enqueue(wake[i]);
+    return true;
+  }
+
+  boolean restrict(int var, int mask) {
+    return set(var, dom[var] & mask);
+  }
+
+  boolean remove(int var, int mask) {
+    return set(var, dom[var] & ~mask);
+  }
+
+  void enqueue(int constraint) {
+    if (queued[constraint])
+      return;
+    queued[constraint] = true;
+    int tail = queueHead + queueSize;
+    if (tail >= queue.length)
+      tail -= queue.length;
+    queue[tail] = constraint;
+    queueSize++;
+  }
+
+  int poll() {
+    int constraint = queue[queueHead];
+    queued[constraint] = false;
+    queueHead++;
+    if (queueHead == queue.length)
+      queueHead = 0;
+    queueSize--;
+    return constraint;
+  }
+
+  void clearQueue() {
+    while (queueSize > 0)
+      poll();
+  }
+}
@@ -0,0 +1,56 @@
+package solver.cp.engine;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import solver.cp.ScheduleParameters;
+import solver.cp.Timer;
+
+/**
+ * Entry point for the pure-Java engine. Same input and output as
+ * solver.cp.Main, but it needs neither the ILOG jar nor its native libraries,
+ * so it runs anywhere with a JDK (see native_compile.sh / native_run.sh).
+ */
+public class NativeMain {
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.out.println("Usage: java NativeMain <file> [--seed <seed>]");
+      return;
+    }
+
+    String input = args[0];
+    long seed = System.nanoTime();
+    for (int i = 1; i < args.length; i++) {
+      if (args[i].equals("--seed") && i + 1 < args.length) {
+        seed = Long.parseLong(args[++i]);
+      } else {
+        System.out.println("Unknown option: " + args[i]);
+        return;
+      }
+    }
+
+    Path path = Paths.get(input);
+    String filename = path.getFileName().toString();
+    System.out.println("Instance: " + input);
+
+    Timer watch = new Timer();
+    watch.start();
+    ScheduleModel model = new ScheduleModel(new ScheduleParameters(input));
+    DfsSearch search = new DfsSearch(model, seed);
+    boolean hasSolved = search.solve();
+    watch.stop();
+
+    if (!hasSolved) {
+      // Without a fail limit in the way, running out of search space is a proof
+      System.out.println("No Solution found! The instance is infeasible.");
+      System.out.println("Number of fails: " + search.totalFails);
+      System.exit(1);
+    }
+
+    System.out.println("Restarts: " + search.restarts + ", total fails: " + search.totalFails);
+    System.out.println("{\"Instance\": \"" + filename +
+        "\", \"Time\": " + String.format("%.2f", watch.getTime()) +
+        ", \"Result\": " + search.fails +
+        ", \"Solution\": \"" + search.getEmployeeHours() + "\"}");
+  }
+}
@@ -0,0 +1,440 @@
+package solver.cp.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import solver.cp.ScheduleParameters;
+
+/**
+ * The scheduling model from CPInstance.solve(), with a dedicated propagator
+ * for each constraint family instead of general-purpose CP constraints.
+ *
+ * Variables: shift(e, d) has one bit per shift code (OFF, NIGHT, DAY,
+ * EVENING), hours(e, d) has one bit per entry of DURATIONS.
+ * Constraints are stored as (type, a, b) triples so propagating one is a
+ * switch and a couple of loops over the domain array, with no allocation.
+ */
+final class ScheduleModel {
+  static final int[] DURATIONS = new int[] { 0, 4, 5, 6, 7, 8 };
+  static final int NUM_SHIFTS = 4;
+
+  // atLeast[h] / atMost[h]: the hour bits whose duration is >= h / <= h
+  static final int[] AT_LEAST = new int[DURATIONS[DURATIONS.length - 1] + 2];
+  static final int[] AT_MOST = new int[DURATIONS[DURATIONS.length - 1] + 2];
+  static {
+    for (int h = 0; h < AT_LEAST.length; h++) {
+      for (int i = 0; i < DURATIONS.length; i++) {
+        if (DURATIONS[i] >= h)
+          AT_LEAST[h] |= 1 << i;
+        if (DURATIONS[i] <= h)
+          AT_MOST[h] |= 1 << i;
+      }
+    }
+  }
+
+  // Constraint types
+  static final int CHANNEL = 0; // a = employee, b = day: off <=> 0 hours
+  static final int DEMAND = 1; // a = day: count of each shift >= minDemandDayShift
+  static final int DAILY_OPERATION = 2; // a = day: sum of hours >= minDailyOperation
+  static final int WEEKLY_HOURS = 3; // a = employee, b = week: 20 <= sum <= 40
+  static final int ORIENTATION = 4; // a = employee: allDiff over the first 4 days
+  static final int NIGHTS = 5; // a = employee: no consecutive nights, total cap
+  static final int SYMMETRY = 6; // a = employee: first 2 days of a <= those of a + 1
+
+  final ScheduleParameters params;
+  final int numEmployees;
+  final int numDays;
+  final int offBit;
+  final int nightBit;
+
+  final DomainStore store;
+  int[] type;
+  int[] argA;
+  int[] argB;
+
+  ScheduleModel(ScheduleParameters params) {
+    this.params = params;
+    numEmployees = params.numEmployees;
+    numDays = params.numDays;
+    offBit = 1 << params.OFF_SHIFT;
+    nightBit = 1 << params.NIGHT_SHIFT;
+
+    store = new DomainStore(2 * numEmployees * numDays);
+    for (int employee = 0; employee < numEmployees; employee++) {
+      for (int day = 0; day < numDays; day++) {
+        store.dom[shiftVar(employee, day)] = (1 << NUM_SHIFTS) - 1;
+        store.dom[hoursVar(employee, day)] = (1 << DURATIONS.length) - 1;
+      }
+    }
+    buildConstraints();
+  }
+
+  int shiftVar(int employee, int day) {
+    return employee * numDays + day;
+  }
+
+  int hoursVar(int employee, int day) {
+    return numEmployees * numDays + employee * numDays + day;
+  }
+
+  int numVars() {
+    return store.dom.length;
+  }
+
+  boolean isShiftVar(int var) {
+    return var < numEmployees * numDays;
+  }
+
+  void buildConstraints() {
+    List<int[]> constraints = new ArrayList<>();
+    List<List<Integer>> watching = new ArrayList<>();
+    for (int var = 0; var < numVars(); var++)
+      watching.add(new ArrayList<>());
+
+    for (int employee = 0; employee < numEmployees; employee++) {
+      for (int day = 0; day < numDays; day++) {
+        add(constraints, watching, CHANNEL, employee, day,
+            shiftVar(employee, day), hoursVar(employee, day));
+      }
+    }
+
+    for (int day = 0; day < numDays; day++) {
+      add(constraints, watching, DEMAND, day, 0, column(day, false));
+      add(constraints, watching, DAILY_OPERATION, day, 0, column(day, true));
+    }
+
+    for (int employee = 0; employee < numEmployees; employee++) {
+      for (int week = 0; week < params.numWeeks; week++) {
+        int[] vars = new int[7];
+        for (int day = 0; day < 7; day++)
+          vars[day] = hoursVar(employee, 7 * week + day);
+        add(constraints, watching, WEEKLY_HOURS, employee, week, vars);
+      }
+
+      // Same assumption as CPInstance: there are always at least 4 days
+      add(constraints, watching, ORIENTATION, employee, 0, shiftVar(employee, 0), shiftVar(employee, 1),
+          shiftVar(employee, 2), shiftVar(employee, 3));
+
+      int[] row = new int[numDays];
+      for (int day = 0; day < numDays; day++)
+        row[day] = shiftVar(employee, day);
+      add(constraints, watching, NIGHTS, employee, 0, row);
+
+      if (employee < numEmployees - 1)
+        add(constraints, watching, SYMMETRY, employee, 0, shiftVar(employee, 0), shiftVar(employee, 1),
+            shiftVar(employee + 1, 0), shiftVar(employee + 1, 1));
+    }
+
+    type = new int[constraints.size()];
+    argA = new int[constraints.size()];
+    argB = new int[constraints.size()];
+    for (int c = 0; c < constraints.size(); c++) {
+      type[c] = constraints.get(c)[0];
+      argA[c] = constraints.get(c)[1];
+      argB[c] = constraints.get(c)[2];
+    }
+
+    int[][] watchers = new int[numVars()][];
+    for (int var = 0; var < numVars(); var++)
+      watchers[var] = watching.get(var).stream().mapToInt(Integer::intValue).toArray();
+    store.setWatchers(watchers, constraints.size());
+  }
+
+  void add(List<int[]> constraints, List<List<Integer>> watching, int constraintType, int a, int b, int... vars) {
+    int id = constraints.size();
+    constraints.add(new int[] { constraintType, a, b });
+    for (int var : vars)
+      watching.get(var).add(id);
+  }
+
+  int[] column(int day, boolean hours) {
+    int[] vars = new int[numEmployees];
+    for (int employee = 0; employee < numEmployees; employee++)
+      vars[employee] = hours ? hoursVar(employee, day) : shiftVar(employee, day);
+    return vars;
+  }
+
+  /**
+   * Propagates everything in the queue to a fixpoint. Returns false on a
+   * wipeout (the queue is emptied either way).
+   */
+  boolean propagate() {
+    while (store.queueSize > 0) {
+      if (!propagate(store.poll())) {
+        store.clearQueue();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean propagateAll() {
+    for (int c = 0; c < type.length; c++)
+      store.enqueue(c);
+    return propagate();
+  }
+
+  boolean propagate(int c) {
+    switch (type[c]) {
+      case CHANNEL:
+        return propagateChannel(argA[c], argB[c]);
+      case DEMAND:
+        return propagateDemand(argA[c]);
+      case DAILY_OPERATION:
+        return propagateDailyOperation(argA[c]);
+      case WEEKLY_HOURS:
+        return propagateWeeklyHours(argA[c], argB[c]);
+      case ORIENTATION:
+        return propagateOrientation(argA[c]);
+      case NIGHTS:
+        return propagateNights(argA[c]);
+      default:
+        return propagateSymmetry(argA[c]);
+    }
+  }
+
+  boolean propagateChannel(int employee, int day) {
+    int shift = shiftVar(employee, day);
+    int hours = hoursVar(employee, day);
+    int[] dom = store.dom;
+    // Bit 0 of the hours domain is the 0-hour "duration"
+    if ((dom[shift] & offBit) == 0 && !store.remove(hours, 1))
+      return false;
+    if (dom[shift] == offBit && !store.restrict(hours, 1))
+      return false;
+    if ((dom[hours] & 1) == 0 && !store.remove(shift, offBit))
+      return false;
+    if (dom[hours] == 1 && !store.restrict(shift, offBit))
+      return false;
+    return true;
+  }
+
+  /**
+   * The four count constraints of a day, looked at together: each shift needs
+   * enough employees who can still take it, and since everyone takes exactly
+   * one shift, the employees not fixed yet have to be able to cover all the
+   * shortfalls at once.
+   */
+  boolean propagateDemand(int day) {
+    int[] dom = store.dom;
+    int[] demand = params.minDemandDayShift[day];
+    int totalShortfall = 0;
+    int unfixed = 0;
+    int shortBits = 0;
+
+    for (int shift = 0; shift < NUM_SHIFTS; shift++) {
+      int bit = 1 << shift;
+      int possible = 0;
+      int fixed = 0;
+      for (int employee = 0; employee < numEmployees; employee++) {
+        int value = dom[shiftVar(employee, day)];
+        if ((value & bit) != 0) {
+          possible++;
+          if (value == bit)
+            fixed++;
+        }
+      }
+
+      if (possible < demand[shift])
+        return false;
+      if (possible == demand[shift] && possible > fixed) {
+        // Everyone who still can has to take this shift
+        for (int employee = 0; employee < numEmployees; employee++) {
+          int var = shiftVar(employee, day);
+          if ((dom[var] & bit) != 0 && !store.restrict(var, bit))
+            return false;
+        }
+        // The counts are stale now; we've been re-queued anyway
+        return true;
+      }
+      if (fixed < demand[shift]) {
+        totalShortfall += demand[shift] - fixed;
+        shortBits |= bit;
+      }
+    }
+
+    for (int employee = 0; employee < numEmployees; employee++)
+      if (Integer.bitCount(dom[shiftVar(employee, day)]) > 1)
+        unfixed++;
+
+    if (totalShortfall > unfixed)
+      return false;
+    if (totalShortfall == unfixed && shortBits != (1 << NUM_SHIFTS) - 1) {
+      // No spare employees left: nobody unfixed can take a shift that's covered
+      for (int employee = 0; employee < numEmployees; employee++) {
+        int var = shiftVar(employee, day);
+        if (Integer.bitCount(dom[var]) > 1 && !store.restrict(var, shortBits))
+          return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * How many more employees shift still needs on day (negative if it has
+   * more than it needs already).
+   */
+  int shortfall(int day, int shift) {
+    int bit = 1 << shift;
+    int fixed = 0;
+    for (int employee = 0; employee < numEmployees; employee++)
+      if (store.dom[shiftVar(employee, day)] == bit)
+        fixed++;
+    return params.minDemandDayShift[day][shift] - fixed;
+  }
+
+  boolean propagateDailyOperation(int day) {
+    int[] dom = store.dom;
+    int maxSum = 0;
+    for (int employee = 0; employee < numEmployees; employee++)
+      maxSum += maxHours(dom[hoursVar(employee, day)]);
+
+    int slack = maxSum - params.minDailyOperation;
+    if (slack < 0)
+      return false;
+    for (int employee = 0; employee < numEmployees; employee++) {
+      int var = hoursVar(employee, day);
+      int atLeast = maxHours(dom[var]) - slack;
+      if (atLeast > minHours(dom[var]) && !store.restrict(var, atLeastMask(atLeast)))
+        return false;
+    }
+    return true;
+  }
+
+  boolean propagateWeeklyHours(int employee, int week) {
+    int[] dom = store.dom;
+    int minSum = 0;
+    int maxSum = 0;
+    for (int day = 7 * week; day < 7 * (week + 1); day++) {
+      minSum += minHours(dom[hoursVar(employee, day)]);
+      maxSum += maxHours(dom[hoursVar(employee, day)]);
+    }
+
+    int minWeekly = params.minWeeklyWork;
+    int maxWeekly = params.maxWeeklyWork;
+    if (minSum > maxWeekly || maxSum < minWeekly)
+      return false;
+    for (int day = 7 * week; day < 7 * (week + 1); day++) {
+      int var = hoursVar(employee, day);
+      int atLeast = minWeekly - (maxSum - maxHours(dom[var]));
+      int atMost = maxWeekly - (minSum - minHours(dom[var]));
+      if (!store.restrict(var, atLeastMask(atLeast) & atMostMask(atMost)))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * allDiff of 4 variables over 4 values, i.e. a permutation: a fixed value
+   * is removed from the others, and a value only one variable can still take
+   * is fixed there.
+   */
+  boolean propagateOrientation(int employee) {
+    int[] dom = store.dom;
+    for (int day = 0; day < 4; day++) {
+      int value = dom[shiftVar(employee, day)];
+      if (Integer.bitCount(value) != 1)
+        continue;
+      for (int other = 0; other < 4; other++)
+        if (other != day && !store.remove(shiftVar(employee, other), value))
+          return false;
+    }
+
+    for (int shift = 0; shift < NUM_SHIFTS; shift++) {
+      int bit = 1 << shift;
+      int count = 0;
+      int last = -1;
+      for (int day = 0; day < 4; day++) {
+        if ((dom[shiftVar(employee, day)] & bit) != 0) {
+          count++;
+          last = day;
+        }
+      }
+      if (count == 0)
+        return false;
+      if (count == 1 && !store.restrict(shiftVar(employee, last), bit))
+        return false;
+    }
+    return true;
+  }
+
+  // Like CPInstance, this only supports maxConsecutiveNightShift = 1
+  boolean propagateNights(int employee) {
+    int[] dom = store.dom;
+    int nights = 0;
+    for (int day = 0; day < numDays; day++) {
+      if (dom[shiftVar(employee, day)] != nightBit)
+        continue;
+      nights++;
+      if (day > 0 && !store.remove(shiftVar(employee, day - 1), nightBit))
+        return false;
+      if (day < numDays - 1 && !store.remove(shiftVar(employee, day + 1), nightBit))
+        return false;
+    }
+
+    if (nights > params.maxTotalNightShift)
+      return false;
+    if (nights == params.maxTotalNightShift) {
+      for (int day = 0; day < numDays; day++) {
+        int var = shiftVar(employee, day);
+        if (dom[var] != nightBit && !store.remove(var, nightBit))
+          return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * 1000 * day1 + 100 * day2 is non-decreasing over employees (see
+   * CPInstance.addSymmetryBreaks()), which is a lexicographic order on the
+   * first 2 shifts of neighbouring employees.
+   */
+  boolean propagateSymmetry(int employee) {
+    int[] dom = store.dom;
+    int a0 = shiftVar(employee, 0);
+    int a1 = shiftVar(employee, 1);
+    int b0 = shiftVar(employee + 1, 0);
+    int b1 = shiftVar(employee + 1, 1);
+
+    if (!store.restrict(a0, atMostBits(maxBit(dom[b0]))) || !store.restrict(b0, ~atMostBits(minBit(dom[a0]) - 1)))
+      return false;
+    if (dom[a0] == dom[b0] && Integer.bitCount(dom[a0]) == 1) {
+      if (!store.restrict(a1, atMostBits(maxBit(dom[b1]))) || !store.restrict(b1, ~atMostBits(minBit(dom[a1]) - 1)))
+        return false;
+    }
+    return true;
+  }
+
+  static int minBit(int dom) {
+    return Integer.numberOfTrailingZeros(dom);
+  }
+
+  static int maxBit(int dom) {
+    return 31 - Integer.numberOfLeadingZeros(dom);
+  }
+
+  // All bits up to and including bit (none if bit < 0)
+  static int atMostBits(int bit) {
+    return bit < 0 ? 0 : (int) ((1L << (bit + 1)) - 1);
+  }
+
+  static int minHours(int dom) {
+    return DURATIONS[minBit(dom)];
+  }
+
+  static int maxHours(int dom) {
+    return DURATIONS[maxBit(dom)];
+  }
+
+  static int atLeastMask(int hours) {
+    if (hours <= 0)
+      return AT_LEAST[0];
+    return hours < AT_LEAST.length ? AT_LEAST[hours] : 0;
+  }
+
+  static int atMostMask(int hours) {
+    if (hours < 0)
+      return 0;
+    return hours < AT_MOST.length ? AT_MOST[hours] : AT_MOST[AT_MOST.length - 1];
+  }
+}
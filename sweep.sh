@@ -0,0 +1,26 @@
+#!/bin/bash
+
+########################################
+############# CSCI 2951-O ##############
+########################################
+
+#Designed to work on the department machines
+#e.g. sh sweep.sh init spool/ input/ 300 --seeds 5 --strategies FastButBoring,CoreStaffSupportStaff
+#     sh sweep.sh run spool/ 8
+#     sh compareResults.sh results.log spool/results.log
+
+E_BADARGS=65
+if [ $# -lt 2 ]
+then
+	echo "Usage: `basename $0` <init | run | work | status | collect> <spoolDir> ..."
+	exit $E_BADARGS
+fi
+
+# export the ilog license to run the solver
+export ILOG_LICENSE_FILE=/local/projects/cplex/ilm/current/linux/access.site.ilm
+
+# export the solver libraries into the path
+export LD_LIBRARY_PATH=$LD_LIBRARY_PATH:/local/projects/cplex/CPLEX_Studio221/cpoptimizer/bin/x86-64_linux:/local/projects/cplex/CPLEX_Studio221/cplex/bin/x86-64_linux
+
+# add the solver jar to the classpath and run; workers and solver runs inherit both
+java -cp /local/projects/cplex/CPLEX_Studio221/cpoptimizer/lib/ILOG.CP.jar:src solver.cp.SweepCoordinator "$@"